@@ -0,0 +1,93 @@
+package com.example.adaptnxt.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.orm.jpa.EntityManagerFactoryDependsOnPostProcessor;
+import org.springframework.jdbc.BadSqlGrammarException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import jakarta.annotation.PostConstruct;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Merges duplicate carts and cart lines left from before carts.user_id and
+ * cart_items (cart_id, product_id) were unique, so the schema update can add
+ * those keys. Runs before the entity manager factory starts. A user's lines
+ * move to their oldest cart and the other carts go. Lines for the same product
+ * are summed into the oldest line, one product per transaction. Each step can
+ * be re-run after a crash, and on a new database there is nothing to do.
+ * The totals repair job later corrects the running totals of merged carts.
+ */
+@Component
+public class CartDuplicateMigration {
+
+    private static final Logger log = LoggerFactory.getLogger(CartDuplicateMigration.class);
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @PostConstruct
+    public void mergeDuplicates() {
+        try {
+            mergeCarts();
+            mergeLines();
+        } catch (BadSqlGrammarException e) {
+            // Tables not created yet
+            log.debug("No cart tables to merge: {}", e.getMessage());
+        }
+    }
+
+    private void mergeCarts() {
+        List<Long> userIds = jdbcTemplate.queryForList(
+                "SELECT user_id FROM carts GROUP BY user_id HAVING COUNT(*) > 1", Long.class);
+        for (Long userId : userIds) {
+            List<Long> cartIds = jdbcTemplate.queryForList(
+                    "SELECT id FROM carts WHERE user_id = ? ORDER BY id", Long.class, userId);
+            Long keep = cartIds.get(0);
+            for (Long cartId : cartIds.subList(1, cartIds.size())) {
+                jdbcTemplate.update("UPDATE cart_items SET cart_id = ? WHERE cart_id = ?", keep, cartId);
+                jdbcTemplate.update("DELETE FROM carts WHERE id = ?", cartId);
+            }
+            log.info("Merged {} carts of user {} into cart {}", cartIds.size(), userId, keep);
+        }
+    }
+
+    private void mergeLines() {
+        List<Map<String, Object>> duplicates = jdbcTemplate.queryForList(
+                "SELECT cart_id, product_id FROM cart_items GROUP BY cart_id, product_id HAVING COUNT(*) > 1");
+        // The JPA transaction manager needs the entity manager factory, which is waiting for this
+        TransactionTemplate transaction = new TransactionTemplate(new DataSourceTransactionManager(jdbcTemplate.getDataSource()));
+        for (Map<String, Object> duplicate : duplicates) {
+            Object cartId = duplicate.get("cart_id");
+            Object productId = duplicate.get("product_id");
+            // The summed quantity and the deletes commit together, so a re-run never counts a line twice
+            transaction.executeWithoutResult(status -> {
+                List<Map<String, Object>> lines = jdbcTemplate.queryForList(
+                        "SELECT id, quantity FROM cart_items WHERE cart_id = ? AND product_id = ? ORDER BY id FOR UPDATE",
+                        cartId, productId);
+                Object keep = lines.get(0).get("id");
+                int quantity = lines.stream().mapToInt(line -> ((Number) line.get("quantity")).intValue()).sum();
+                jdbcTemplate.update("UPDATE cart_items SET quantity = ? WHERE id = ?", quantity, keep);
+                for (Map<String, Object> line : lines.subList(1, lines.size())) {
+                    jdbcTemplate.update("DELETE FROM cart_items WHERE id = ?", line.get("id"));
+                }
+                log.info("Merged {} lines of product {} in cart {}", lines.size(), productId, cartId);
+            });
+        }
+    }
+
+    // Makes the entity manager factory, and with it the schema update, wait for the merge
+    @Component
+    static class EntityManagerFactoryDependsOnMigration extends EntityManagerFactoryDependsOnPostProcessor {
+
+        EntityManagerFactoryDependsOnMigration() {
+            super(CartDuplicateMigration.class);
+        }
+    }
+}
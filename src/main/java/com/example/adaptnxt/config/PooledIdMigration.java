@@ -0,0 +1,50 @@
+package com.example.adaptnxt.config;
+
+import com.example.adaptnxt.models.PooledIds;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+
+import java.util.Map;
+
+/**
+ * Moves tables that used AUTO_INCREMENT ids onto pooled table ids. Before
+ * anything is inserted, each generator row is created or raised so its next
+ * block starts above the largest id already in the table. Safe to run on
+ * every start and from several instances at once; a row is never lowered.
+ */
+@Component
+public class PooledIdMigration {
+
+    private static final Logger log = LoggerFactory.getLogger(PooledIdMigration.class);
+
+    // Generator name -> table whose ids it hands out
+    private static final Map<String, String> GENERATORS = Map.of(
+            "orders", "orders",
+            "order_items", "order_items");
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // Only injected so the schema (including the generator table) exists before this runs
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @PostConstruct
+    public void seedGenerators() {
+        GENERATORS.forEach((name, table) -> {
+            long maxId = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM " + table, Long.class);
+            long floor = maxId + PooledIds.ALLOCATION_SIZE;
+            jdbcTemplate.update("INSERT INTO " + PooledIds.TABLE + " (" + PooledIds.NAME_COLUMN + ", " + PooledIds.VALUE_COLUMN + ") "
+                    + "VALUES (?, ?) ON DUPLICATE KEY UPDATE "
+                    + PooledIds.VALUE_COLUMN + " = GREATEST(" + PooledIds.VALUE_COLUMN + ", VALUES(" + PooledIds.VALUE_COLUMN + "))",
+                    name, floor);
+            log.debug("Pooled id generator {} starts above id {}", name, maxId);
+        });
+    }
+}
@@ -4,6 +4,7 @@ import java.util.List;
 
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpMethod;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.config.annotation.authentication.configuration.AuthenticationConfiguration;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
@@ -47,17 +48,25 @@ public class SecurityConfig {
             .authorizeHttpRequests(authz -> authz
                 // Public endpoints - no authentication required
                 .requestMatchers("/api/auth/**").permitAll()
+                .requestMatchers("/api/products/cache/stats").hasRole("ADMIN")
+                .requestMatchers(HttpMethod.POST, "/api/products/import").hasRole("ADMIN")
+                .requestMatchers("/api/products/*/stock-shards").hasRole("ADMIN")
                 .requestMatchers("/api/products/**").permitAll()
                 .requestMatchers("/api/users/check-username/**").permitAll()
                 .requestMatchers("/api/users/check-email/**").permitAll()
                 
                 // CART ENDPOINTS - COMPLETELY OPEN FOR DEBUGGING
+                .requestMatchers("/api/cart/holds/stats").hasRole("ADMIN")
+                .requestMatchers("/api/cart/store/stats").hasRole("ADMIN")
                 .requestMatchers("/api/cart/**").permitAll()
                 
                 // Admin only endpoints
                 .requestMatchers("/api/users").hasRole("ADMIN")
                 .requestMatchers("/api/orders/paged").hasRole("ADMIN")
+                .requestMatchers("/api/orders/export").hasRole("ADMIN")
                 .requestMatchers("/api/orders/status/**").hasRole("ADMIN")
+                .requestMatchers("/api/orders/async/**").hasRole("ADMIN")
+                .requestMatchers("/api/admin/**").hasRole("ADMIN")
                 
                 // Customer and Admin endpoints - TEMPORARILY DISABLED FOR DEBUGGING
                 .requestMatchers("/api/orders/**").permitAll()
@@ -0,0 +1,95 @@
+package com.example.adaptnxt.controller;
+
+import com.example.adaptnxt.models.SalesRollup;
+import com.example.adaptnxt.service.AbandonedCartSweeper;
+import com.example.adaptnxt.service.OptimisticRetryExecutor;
+import com.example.adaptnxt.service.SalesRollupService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/admin")
+@CrossOrigin(origins = "*")
+public class AdminController {
+
+    @Autowired
+    private OptimisticRetryExecutor optimisticRetryExecutor;
+
+    @Autowired
+    private AbandonedCartSweeper abandonedCartSweeper;
+
+    @Autowired
+    private SalesRollupService salesRollupService;
+
+    // Optimistic lock conflict and retry counters (Admin only)
+    @GetMapping("/stats/optimistic-locking")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Map<String, Object>> getOptimisticLockingStats() {
+        return ResponseEntity.ok(optimisticRetryExecutor.getStats());
+    }
+
+    // Abandoned-cart sweeper totals and last run (Admin only)
+    @GetMapping("/stats/cart-sweeper")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Map<String, Object>> getCartSweeperStats() {
+        return ResponseEntity.ok(abandonedCartSweeper.getStats());
+    }
+
+    // Run the abandoned-cart sweeper now and report what it reclaimed (Admin only)
+    @PostMapping("/cart-sweeper/run")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Map<String, Object>> runCartSweeper() {
+        return ResponseEntity.ok(abandonedCartSweeper.sweep());
+    }
+
+    // Revenue dashboard: precomputed hourly or daily sales between from and to (inclusive dates) (Admin only)
+    @GetMapping("/sales")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> getSales(
+            @RequestParam(defaultValue = "DAY") SalesRollup.Granularity granularity,
+            @RequestParam(defaultValue = "TOTAL") SalesRollup.Dimension dimension,
+            @RequestParam(required = false) String key,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        if (to.isBefore(from)) {
+            return ResponseEntity.badRequest().body("Error: 'to' must not be before 'from'");
+        }
+        List<Map<String, Object>> response = new ArrayList<>();
+        for (SalesRollup rollup : salesRollupService.getRollups(
+                granularity, dimension, key, from.atStartOfDay(), to.plusDays(1).atStartOfDay())) {
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("bucketStart", rollup.getBucketStart());
+            row.put("key", rollup.getDimensionKey());
+            row.put("units", rollup.getUnits());
+            row.put("revenue", rollup.getRevenue());
+            row.put("orderCount", rollup.getOrderCount());
+            response.add(row);
+        }
+        return ResponseEntity.ok(response);
+    }
+
+    // Sales rollup rebuild status (Admin only)
+    @GetMapping("/stats/sales-rollups")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Map<String, Object>> getSalesRollupStats() {
+        return ResponseEntity.ok(salesRollupService.getStats());
+    }
+
+    // Recompute sales rollups from orders, for all closed days or the given inclusive range up to yesterday (Admin only)
+    @PostMapping("/sales-rollups/rebuild")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Map<String, Object>> rebuildSalesRollups(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        return ResponseEntity.ok(salesRollupService.rebuild(from, to));
+    }
+}
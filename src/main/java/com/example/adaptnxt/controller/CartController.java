@@ -2,6 +2,7 @@ package com.example.adaptnxt.controller;
 
 import java.math.BigDecimal;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import org.springframework.beans.factory.annotation.Autowired;
@@ -13,6 +14,7 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
@@ -20,6 +22,7 @@ import org.springframework.web.bind.annotation.RestController;
 import com.example.adaptnxt.models.Cart;
 import com.example.adaptnxt.models.CartItem;
 import com.example.adaptnxt.models.User;
+import com.example.adaptnxt.service.CartOperation;
 import com.example.adaptnxt.service.CartService;
 import com.example.adaptnxt.service.UserService;
 
@@ -46,6 +49,20 @@ public class CartController {
         return ResponseEntity.ok("User " + userId + " endpoint is working!");
     }
 
+    // Stock hold statistics
+    @GetMapping("/holds/stats")
+    // @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Map<String, Object>> getHoldStats() {
+        return ResponseEntity.ok(cartService.getHoldStats());
+    }
+
+    // Cart store statistics
+    @GetMapping("/store/stats")
+    // @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Map<String, Object>> getStoreStats() {
+        return ResponseEntity.ok(cartService.getStoreStats());
+    }
+
     // Get or create cart for user
     @GetMapping("/user/{userId}")
     // @PreAuthorize("hasRole('ADMIN') or hasRole('CUSTOMER')")
@@ -54,38 +71,7 @@ public class CartController {
             User user = new User();
             user.setId(userId);
             Cart cart = cartService.getOrCreateCart(user);
-            
-            // Create a simple response object to avoid JSON serialization issues
-            java.util.Map<String, Object> response = new java.util.HashMap<>();
-            response.put("id", cart.getId());
-            response.put("createdAt", cart.getCreatedAt());
-            response.put("updatedAt", cart.getUpdatedAt());
-            
-            // Manually build cartItems array to avoid circular reference
-            java.util.List<java.util.Map<String, Object>> items = new java.util.ArrayList<>();
-            if (cart.getCartItems() != null) {
-                for (CartItem item : cart.getCartItems()) {
-                    java.util.Map<String, Object> itemMap = new java.util.HashMap<>();
-                    itemMap.put("id", item.getId());
-                    itemMap.put("quantity", item.getQuantity());
-                    itemMap.put("priceAtTime", item.getPriceAtTime());
-                    
-                    // Add product information safely
-                    if (item.getProduct() != null) {
-                        java.util.Map<String, Object> productMap = new java.util.HashMap<>();
-                        productMap.put("id", item.getProduct().getId());
-                        productMap.put("name", item.getProduct().getName());
-                        productMap.put("price", item.getProduct().getPrice());
-                        productMap.put("imageUrl", item.getProduct().getImageUrl());
-                        itemMap.put("product", productMap);
-                    }
-                    
-                    items.add(itemMap);
-                }
-            }
-            response.put("cartItems", items);
-            
-            return ResponseEntity.ok(response);
+            return ResponseEntity.ok(toResponse(cart));
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body("Error: " + e.getMessage());
@@ -139,6 +125,26 @@ public class CartController {
         }
     }
 
+    // Apply several add/set/remove operations to the cart in one transaction
+    @PostMapping("/user/{userId}/batch")
+    // @PreAuthorize("hasRole('ADMIN') or hasRole('CUSTOMER')")
+    public ResponseEntity<?> applyBatch(
+            @PathVariable Long userId,
+            @RequestBody List<CartOperation> operations) {
+        try {
+            Cart cart = cartService.applyBatch(userId, operations);
+            java.util.Map<String, Object> response = toResponse(cart);
+            response.put("subtotal", cart.getSubtotal());
+            response.put("itemCount", cart.getItemCount());
+            return ResponseEntity.ok(response);
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body("Error: " + e.getMessage());
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body("Error: Could not update cart!");
+        }
+    }
+
     // Update cart item quantity
     @PutMapping("/item/{cartItemId}")
     // @PreAuthorize("hasRole('ADMIN') or hasRole('CUSTOMER')")
@@ -216,4 +222,37 @@ public class CartController {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
     }
+
+    // Create a simple response object to avoid JSON serialization issues
+    private java.util.Map<String, Object> toResponse(Cart cart) {
+        java.util.Map<String, Object> response = new java.util.HashMap<>();
+        response.put("id", cart.getId());
+        response.put("createdAt", cart.getCreatedAt());
+        response.put("updatedAt", cart.getUpdatedAt());
+        
+        // Manually build cartItems array to avoid circular reference
+        java.util.List<java.util.Map<String, Object>> items = new java.util.ArrayList<>();
+        if (cart.getCartItems() != null) {
+            for (CartItem item : cart.getCartItems()) {
+                java.util.Map<String, Object> itemMap = new java.util.HashMap<>();
+                itemMap.put("id", item.getId());
+                itemMap.put("quantity", item.getQuantity());
+                itemMap.put("priceAtTime", item.getPriceAtTime());
+                
+                // Add product information safely
+                if (item.getProduct() != null) {
+                    java.util.Map<String, Object> productMap = new java.util.HashMap<>();
+                    productMap.put("id", item.getProduct().getId());
+                    productMap.put("name", item.getProduct().getName());
+                    productMap.put("price", item.getProduct().getPrice());
+                    productMap.put("imageUrl", item.getProduct().getImageUrl());
+                    itemMap.put("product", productMap);
+                }
+                
+                items.add(itemMap);
+            }
+        }
+        response.put("cartItems", items);
+        return response;
+    }
 }
@@ -0,0 +1,31 @@
+package com.example.adaptnxt.controller;
+
+/**
+ * Reads the entity version a client based its write on. The If-Match header
+ * carries it as an entity tag ("3" or W/"3"); without the header the version
+ * from the request body is used. Null means the client sent neither, and the
+ * write is applied unconditionally.
+ */
+final class IfMatch {
+
+    private IfMatch() {
+    }
+
+    static Long expectedVersion(String ifMatch, Long bodyVersion) {
+        if (ifMatch == null || ifMatch.isBlank()) {
+            return bodyVersion;
+        }
+        String tag = ifMatch.trim();
+        if (tag.startsWith("W/")) {
+            tag = tag.substring(2);
+        }
+        if (tag.length() >= 2 && tag.startsWith("\"") && tag.endsWith("\"")) {
+            tag = tag.substring(1, tag.length() - 1);
+        }
+        try {
+            return Long.valueOf(tag);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("If-Match must be a version number: " + ifMatch);
+        }
+    }
+}
@@ -1,19 +1,33 @@
 package com.example.adaptnxt.controller;
 
 import com.example.adaptnxt.models.Order;
+import com.example.adaptnxt.models.OrderHistoryEntry;
+import com.example.adaptnxt.service.AsyncCheckoutService;
+import com.example.adaptnxt.service.BulkStatusChange;
+import com.example.adaptnxt.service.KeysetPage;
+import com.example.adaptnxt.service.OrderExportService;
 import com.example.adaptnxt.service.OrderService;
 import com.example.adaptnxt.service.UserService;
+import com.fasterxml.jackson.databind.util.RawValue;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
 import java.util.List;
+import java.util.Locale;
 import java.util.Optional;
 
 @RestController
@@ -27,6 +41,12 @@ public class OrderController {
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private AsyncCheckoutService asyncCheckoutService;
+
+    @Autowired
+    private OrderExportService orderExportService;
+
     // Get all orders (Admin only)
     @GetMapping
     @PreAuthorize("hasRole('ADMIN')")
@@ -91,6 +111,36 @@ public class OrderController {
         }
     }
 
+    // Stream orders placed between from and to (inclusive dates) as CSV or NDJSON, for finance (Admin only)
+    @GetMapping("/export")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> exportOrders(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) Order.OrderStatus status,
+            @RequestParam(defaultValue = "csv") String format) {
+        if (to.isBefore(from)) {
+            return ResponseEntity.badRequest().body("Error: 'to' must not be before 'from'");
+        }
+        OrderExportService.Format exportFormat;
+        try {
+            exportFormat = OrderExportService.Format.valueOf(format.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body("Error: Unsupported export format: " + format);
+        }
+        
+        StreamingResponseBody body = out -> orderExportService.export(
+                out, exportFormat, from.atStartOfDay(), to.plusDays(1).atStartOfDay(), status);
+        String extension = exportFormat == OrderExportService.Format.CSV ? "csv" : "ndjson";
+        return ResponseEntity.ok()
+                .contentType(exportFormat == OrderExportService.Format.CSV
+                        ? new MediaType("text", "csv", StandardCharsets.UTF_8)
+                        : MediaType.APPLICATION_NDJSON)
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=\"orders-" + from + "-" + to + "." + extension + "\"")
+                .body(body);
+    }
+
     // Get all orders with pagination (Admin only)
     @GetMapping("/paged")
     @PreAuthorize("hasRole('ADMIN')")
@@ -178,41 +228,19 @@ public class OrderController {
     // @PreAuthorize("hasRole('ADMIN') or hasRole('CUSTOMER')")
     public ResponseEntity<?> getOrdersByUserId(@PathVariable Long userId) {
         try {
-            List<Order> orders = orderService.getOrdersByUserId(userId);
+            // Served from the order_history read model: one indexed range read, items already as JSON
+            List<OrderHistoryEntry> history = orderService.getOrderHistory(userId);
             
-            // Build response DTOs to avoid circular reference issues
             List<java.util.Map<String, Object>> response = new java.util.ArrayList<>();
             
-            for (Order order : orders) {
+            for (OrderHistoryEntry entry : history) {
                 java.util.Map<String, Object> orderMap = new java.util.HashMap<>();
-                orderMap.put("id", order.getId());
-                orderMap.put("totalAmount", order.getTotalAmount());
-                orderMap.put("status", order.getOrderStatus().toString());
-                orderMap.put("orderDate", order.getOrderDate());
-                orderMap.put("shippingAddress", order.getShippingAddress());
-                
-                // Add order items safely
-                List<java.util.Map<String, Object>> items = new java.util.ArrayList<>();
-                if (order.getOrderItems() != null) {
-                    for (var item : order.getOrderItems()) {
-                        java.util.Map<String, Object> itemMap = new java.util.HashMap<>();
-                        itemMap.put("id", item.getId());
-                        itemMap.put("quantity", item.getQuantity());
-                        itemMap.put("price", item.getPriceAtTime());
-                        
-                        // Add product information safely
-                        if (item.getProduct() != null) {
-                            java.util.Map<String, Object> productMap = new java.util.HashMap<>();
-                            productMap.put("id", item.getProduct().getId());
-                            productMap.put("name", item.getProduct().getName());
-                            productMap.put("description", item.getProduct().getDescription());
-                            itemMap.put("product", productMap);
-                        }
-                        
-                        items.add(itemMap);
-                    }
-                }
-                orderMap.put("orderItems", items);
+                orderMap.put("id", entry.getOrderId());
+                orderMap.put("totalAmount", entry.getTotalAmount());
+                orderMap.put("status", entry.getOrderStatus().toString());
+                orderMap.put("orderDate", entry.getOrderDate());
+                orderMap.put("shippingAddress", entry.getShippingAddress());
+                orderMap.put("orderItems", new RawValue(entry.getItemsJson()));
                 
                 response.add(orderMap);
             }
@@ -238,6 +266,23 @@ public class OrderController {
         return ResponseEntity.ok(orders);
     }
 
+    // Scroll a customer's orders with an opaque cursor instead of page numbers (constant cost at any depth)
+    @GetMapping("/user/{userId}/scroll")
+    // @PreAuthorize("hasRole('ADMIN') or hasRole('CUSTOMER')")
+    public ResponseEntity<?> scrollOrdersByUserId(
+            @PathVariable Long userId,
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "desc") String sortDir,
+            @RequestParam(defaultValue = "false") boolean includeTotal) {
+        try {
+            KeysetPage<Order> orders = orderService.scrollOrdersByUserId(userId, after, size, sortDir, includeTotal);
+            return ResponseEntity.ok(toSummaryPage(orders));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body("Error: " + e.getMessage());
+        }
+    }
+
     // Get orders by status
     @GetMapping("/status/{status}")
     @PreAuthorize("hasRole('ADMIN')")
@@ -259,12 +304,50 @@ public class OrderController {
         return ResponseEntity.ok(orders);
     }
 
+    // Scroll one status queue (e.g. PENDING) with an opaque cursor, oldest first by default
+    @GetMapping("/status/{status}/scroll")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> scrollOrdersByStatus(
+            @PathVariable Order.OrderStatus status,
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "asc") String sortDir,
+            @RequestParam(defaultValue = "false") boolean includeTotal) {
+        try {
+            KeysetPage<Order> orders = orderService.scrollOrdersByStatus(status, after, size, sortDir, includeTotal);
+            return ResponseEntity.ok(toSummaryPage(orders));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body("Error: " + e.getMessage());
+        }
+    }
+
+    // Order headers only, so a listing page never walks items or users row by row
+    private KeysetPage<java.util.Map<String, Object>> toSummaryPage(KeysetPage<Order> orders) {
+        List<java.util.Map<String, Object>> content = new java.util.ArrayList<>();
+        for (Order order : orders.getContent()) {
+            java.util.Map<String, Object> orderMap = new java.util.HashMap<>();
+            orderMap.put("id", order.getId());
+            orderMap.put("userId", order.getUser().getId());
+            orderMap.put("totalAmount", order.getTotalAmount());
+            orderMap.put("status", order.getOrderStatus().toString());
+            orderMap.put("orderDate", order.getOrderDate());
+            orderMap.put("shippingAddress", order.getShippingAddress());
+            content.add(orderMap);
+        }
+        return new KeysetPage<>(content, orders.getSize(), orders.isHasNext(), orders.getNextCursor(),
+                orders.getTotalElements());
+    }
+
     // Create order from cart
     @PostMapping("/user/{userId}/create")
     // @PreAuthorize("hasRole('ADMIN') or hasRole('CUSTOMER')")
     public ResponseEntity<?> createOrderFromCart(
             @PathVariable Long userId,
-            @RequestParam String shippingAddress) {
+            @RequestParam String shippingAddress,
+            @RequestParam(defaultValue = "false") boolean async) {
+        if (async) {
+            return placeOrderAsync(userId, shippingAddress);
+        }
         try {
             System.out.println("Creating order for user: " + userId + " with address: " + shippingAddress);
             Order order = orderService.createOrderFromCart(userId, shippingAddress);
@@ -290,22 +373,70 @@ public class OrderController {
         }
     }
 
+    // Accept the order now and finish the checkout in the background; poll GET /{orderId}/status for the outcome
+    private ResponseEntity<?> placeOrderAsync(Long userId, String shippingAddress) {
+        try {
+            Order order = asyncCheckoutService.placeOrder(userId, shippingAddress);
+            
+            java.util.Map<String, Object> response = new java.util.HashMap<>();
+            response.put("id", order.getId());
+            response.put("status", order.getOrderStatus().toString());
+            response.put("orderDate", order.getOrderDate());
+            response.put("shippingAddress", order.getShippingAddress());
+            response.put("statusUrl", "/api/orders/" + order.getId() + "/status");
+            response.put("message", "Order accepted");
+            
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(response);
+        } catch (AsyncCheckoutService.CheckoutBusyException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header("Retry-After", "1")
+                    .body("Error: " + e.getMessage());
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body("Error: " + e.getMessage());
+        }
+    }
+
+    // Checkout status of an order, including why an async checkout failed
+    @GetMapping("/{orderId}/status")
+    // @PreAuthorize("hasRole('ADMIN') or hasRole('CUSTOMER')")
+    public ResponseEntity<?> getOrderStatus(@PathVariable Long orderId) {
+        return asyncCheckoutService.getStatus(orderId)
+                .<ResponseEntity<?>>map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    // Async checkout queue statistics (Admin only)
+    @GetMapping("/async/stats")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<java.util.Map<String, Object>> getAsyncCheckoutStats() {
+        return ResponseEntity.ok(asyncCheckoutService.getStats());
+    }
+
     // Update order status (Admin only)
     @PutMapping("/{orderId}/status")
     @PreAuthorize("hasRole('ADMIN')")
     public ResponseEntity<?> updateOrderStatus(
             @PathVariable Long orderId,
-            @RequestParam Order.OrderStatus status) {
+            @RequestParam Order.OrderStatus status,
+            @RequestHeader(value = "If-Match", required = false) String ifMatch) {
         try {
-            Order updatedOrder = orderService.updateOrderStatus(orderId, status);
+            Order updatedOrder = orderService.updateOrderStatus(orderId, status, IfMatch.expectedVersion(ifMatch, null));
             
             // Return the expected message format for admin.js
             java.util.Map<String, Object> response = new java.util.HashMap<>();
             response.put("message", "Order status updated");
             response.put("orderId", orderId);
             response.put("newStatus", status.toString());
+            response.put("version", updatedOrder.getVersion());
             
             return ResponseEntity.ok(response);
+        } catch (OptimisticLockingFailureException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body("Error: Order was modified by someone else, reload it and retry");
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body("Error: " + e.getMessage());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body("Error: " + e.getMessage());
         } catch (RuntimeException e) {
             return ResponseEntity.notFound().build();
         } catch (Exception e) {
@@ -314,13 +445,36 @@ public class OrderController {
         }
     }
 
+    // Move many orders to one status at once, e.g. CONFIRMED -> SHIPPED (Admin only)
+    @PostMapping("/status/bulk")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> bulkUpdateOrderStatus(@RequestBody BulkStatusChange change) {
+        try {
+            return ResponseEntity.ok(orderService.bulkUpdateStatus(change));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body("Error: " + e.getMessage());
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body("Error: Could not update order statuses!");
+        }
+    }
+
     // Update order details (Admin only)
     @PutMapping("/{id}")
     @PreAuthorize("hasRole('ADMIN')")
-    public ResponseEntity<?> updateOrder(@PathVariable Long id, @RequestBody Order orderDetails) {
+    public ResponseEntity<?> updateOrder(@PathVariable Long id, @RequestBody Order orderDetails,
+                                         @RequestHeader(value = "If-Match", required = false) String ifMatch) {
         try {
-            Order updatedOrder = orderService.updateOrder(id, orderDetails);
+            Long expectedVersion = IfMatch.expectedVersion(ifMatch, orderDetails.getVersion());
+            Order updatedOrder = orderService.updateOrder(id, orderDetails, expectedVersion);
             return ResponseEntity.ok(updatedOrder);
+        } catch (OptimisticLockingFailureException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body("Error: Order was modified by someone else, reload it and retry");
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body("Error: " + e.getMessage());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body("Error: " + e.getMessage());
         } catch (RuntimeException e) {
             return ResponseEntity.notFound().build();
         } catch (Exception e) {
@@ -361,6 +515,11 @@ public class OrderController {
         try {
             Order cancelledOrder = orderService.cancelOrder(orderId);
             return ResponseEntity.ok(cancelledOrder);
+        } catch (OptimisticLockingFailureException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body("Error: Order was modified concurrently, please retry");
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body("Error: " + e.getMessage());
         } catch (RuntimeException e) {
             return ResponseEntity.badRequest().body("Error: " + e.getMessage());
         } catch (Exception e) {
@@ -1,18 +1,30 @@
 package com.example.adaptnxt.controller;
 
 import com.example.adaptnxt.models.Product;
+import com.example.adaptnxt.service.KeysetPage;
+import com.example.adaptnxt.service.ProductImportService;
 import com.example.adaptnxt.service.ProductService;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @RestController
@@ -23,6 +35,12 @@ public class ProductController {
     @Autowired
     private ProductService productService;
 
+    @Autowired
+    private ProductImportService productImportService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
     // Get all products (no pagination)
     @GetMapping("/all")
     public ResponseEntity<List<Product>> getAllProducts() {
@@ -30,6 +48,13 @@ public class ProductController {
         return ResponseEntity.ok(products);
     }
 
+    // Stream all products as newline-delimited JSON (constant memory, for feed exports)
+    @GetMapping(value = "/all/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAllProducts() {
+        StreamingResponseBody body = out -> writeNdjson(out, false);
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+    }
+
     // Get all products with pagination
     @GetMapping
     public ResponseEntity<Page<Product>> getAllProductsPaged(
@@ -47,6 +72,35 @@ public class ProductController {
         return ResponseEntity.ok(products);
     }
 
+    // Per-category product counts and in-stock price ranges (served from memory)
+    @GetMapping("/facets/categories")
+    public ResponseEntity<List<Map<String, Object>>> getCategoryFacets() {
+        return ResponseEntity.ok(productService.getCategoryFacets());
+    }
+
+    // Product cache statistics (Admin only)
+    @GetMapping("/cache/stats")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Map<String, Object>> getCacheStats() {
+        return ResponseEntity.ok(productService.getCacheStats());
+    }
+
+    // Scroll all products with an opaque cursor instead of page numbers (constant cost at any depth)
+    @GetMapping("/scroll")
+    public ResponseEntity<?> scrollProducts(
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "id") String sortBy,
+            @RequestParam(defaultValue = "asc") String sortDir,
+            @RequestParam(defaultValue = "false") boolean includeTotal) {
+        try {
+            KeysetPage<Product> products = productService.scrollProducts(after, size, sortBy, sortDir, includeTotal);
+            return ResponseEntity.ok(products);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body("Error: " + e.getMessage());
+        }
+    }
+
     // Get product by ID
     @GetMapping("/{id}")
     public ResponseEntity<Product> getProductById(@PathVariable Long id) {
@@ -91,6 +145,24 @@ public class ProductController {
         return ResponseEntity.ok(products);
     }
 
+    // Scroll products in a category with an opaque cursor
+    @GetMapping("/category/{category}/scroll")
+    public ResponseEntity<?> scrollProductsByCategory(
+            @PathVariable String category,
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "id") String sortBy,
+            @RequestParam(defaultValue = "asc") String sortDir,
+            @RequestParam(defaultValue = "false") boolean includeTotal) {
+        try {
+            KeysetPage<Product> products = productService.scrollProductsByCategory(
+                    category, after, size, sortBy, sortDir, includeTotal);
+            return ResponseEntity.ok(products);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body("Error: " + e.getMessage());
+        }
+    }
+
     // Get available products (in stock)
     @GetMapping("/available")
     public ResponseEntity<Page<Product>> getAvailableProducts(
@@ -102,6 +174,23 @@ public class ProductController {
         return ResponseEntity.ok(products);
     }
 
+    // Scroll available products with an opaque cursor
+    @GetMapping("/available/scroll")
+    public ResponseEntity<?> scrollAvailableProducts(
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "id") String sortBy,
+            @RequestParam(defaultValue = "asc") String sortDir,
+            @RequestParam(defaultValue = "false") boolean includeTotal) {
+        try {
+            KeysetPage<Product> products = productService.scrollAvailableProducts(
+                    after, size, sortBy, sortDir, includeTotal);
+            return ResponseEntity.ok(products);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body("Error: " + e.getMessage());
+        }
+    }
+
     // Get products sorted by name
     @GetMapping("/sorted")
     public ResponseEntity<List<Product>> getProductsSortedByName() {
@@ -109,6 +198,30 @@ public class ProductController {
         return ResponseEntity.ok(products);
     }
 
+    // Stream products sorted by name as newline-delimited JSON
+    @GetMapping(value = "/sorted/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamProductsSortedByName() {
+        StreamingResponseBody body = out -> writeNdjson(out, true);
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+    }
+
+    private void writeNdjson(OutputStream out, boolean sortedByName) throws IOException {
+        BufferedOutputStream buffered = new BufferedOutputStream(out, 64 * 1024);
+        try {
+            productService.streamProducts(sortedByName, product -> {
+                try {
+                    buffered.write(objectMapper.writeValueAsBytes(product));
+                    buffered.write('\n');
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        buffered.flush();
+    }
+
     // Create new product (Admin only)
     @PostMapping
     @PreAuthorize("hasRole('ADMIN')")
@@ -122,13 +235,42 @@ public class ProductController {
         }
     }
 
+    // Bulk import products from a CSV or NDJSON body (Admin only)
+    @PostMapping(value = "/import", consumes = {"text/csv", MediaType.APPLICATION_NDJSON_VALUE})
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> importProducts(
+            InputStream body,
+            @RequestHeader("Content-Type") String contentType,
+            @RequestParam(defaultValue = "" + ProductImportService.DEFAULT_CHUNK_SIZE) int chunkSize) {
+        try {
+            ProductImportService.Format format = MediaType.parseMediaType(contentType)
+                    .isCompatibleWith(MediaType.APPLICATION_NDJSON)
+                    ? ProductImportService.Format.NDJSON
+                    : ProductImportService.Format.CSV;
+            Map<String, Object> report = productImportService.importProducts(body, format, chunkSize);
+            return ResponseEntity.ok(report);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body("Error: " + e.getMessage());
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body("Error: Could not import products!");
+        }
+    }
+
     // Update product (Admin only)
     @PutMapping("/{id}")
     @PreAuthorize("hasRole('ADMIN')")
-    public ResponseEntity<?> updateProduct(@PathVariable Long id, @RequestBody Product productDetails) {
+    public ResponseEntity<?> updateProduct(@PathVariable Long id, @RequestBody Product productDetails,
+                                           @RequestHeader(value = "If-Match", required = false) String ifMatch) {
         try {
-            Product updatedProduct = productService.updateProduct(id, productDetails);
+            Long expectedVersion = IfMatch.expectedVersion(ifMatch, productDetails.getVersion());
+            Product updatedProduct = productService.updateProduct(id, productDetails, expectedVersion);
             return ResponseEntity.ok(updatedProduct);
+        } catch (OptimisticLockingFailureException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body("Error: Product was modified by someone else, reload it and retry");
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body("Error: " + e.getMessage());
         } catch (RuntimeException e) {
             return ResponseEntity.notFound().build();
         } catch (Exception e) {
@@ -137,6 +279,30 @@ public class ProductController {
         }
     }
 
+    // Enable hot-SKU mode: split the product's stock across shard rows (Admin only)
+    @PutMapping("/{id}/stock-shards")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> enableStockSharding(@PathVariable Long id, @RequestParam(defaultValue = "8") int shards) {
+        try {
+            return ResponseEntity.ok(productService.enableStockSharding(id, shards));
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (RuntimeException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+    // Disable hot-SKU mode and fold the shards back into the stock column (Admin only)
+    @DeleteMapping("/{id}/stock-shards")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> disableStockSharding(@PathVariable Long id) {
+        try {
+            return ResponseEntity.ok(productService.disableStockSharding(id));
+        } catch (RuntimeException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
     // Delete product (Admin only)
     @DeleteMapping("/{id}")
     @PreAuthorize("hasRole('ADMIN')")
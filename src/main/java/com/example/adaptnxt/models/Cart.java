@@ -1,8 +1,10 @@
 package com.example.adaptnxt.models;
 
+import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.List;
 
+import org.hibernate.annotations.ColumnDefault;
 import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.UpdateTimestamp;
 
@@ -19,12 +21,13 @@ import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.OneToMany;
 import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
 @Entity
-@Table(name = "carts")
+@Table(name = "carts", uniqueConstraints = @UniqueConstraint(columnNames = "user_id"))
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -42,6 +45,17 @@ public class Cart {
     @OneToMany(mappedBy = "cart", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
     private List<CartItem> cartItems;
     
+    // Running totals kept in step with cart_items by CartService, so totals never need the lines.
+    // Only ever written by in-place UPDATE statements: the fields are a read-only mirror, so a
+    // stale value in a loaded cart can never be flushed over a concurrent change.
+    @ColumnDefault("0")
+    @Column(nullable = false, precision = 12, scale = 2, insertable = false, updatable = false)
+    private BigDecimal subtotal = BigDecimal.ZERO;
+    
+    @ColumnDefault("0")
+    @Column(name = "item_count", nullable = false, insertable = false, updatable = false)
+    private Integer itemCount = 0;
+    
     @CreationTimestamp
     @Column(name = "created_at", updatable = false)
     private LocalDateTime createdAt;
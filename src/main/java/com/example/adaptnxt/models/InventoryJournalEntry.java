@@ -0,0 +1,42 @@
+package com.example.adaptnxt.models;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDateTime;
+
+/**
+ * Stock taken by the in-memory inventory ledger but not yet applied to
+ * products.stock. Rows are written in the order transaction and deleted by
+ * the flush that applies them, so anything left here after a crash is
+ * replayed on the next startup.
+ */
+@Entity
+@Table(name = "inventory_journal")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class InventoryJournalEntry {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(name = "product_id", nullable = false)
+    private Long productId;
+    
+    @Column(nullable = false)
+    private Integer quantity;
+    
+    @CreationTimestamp
+    @Column(name = "created_at", updatable = false)
+    private LocalDateTime createdAt;
+    
+    public InventoryJournalEntry(Long productId, Integer quantity) {
+        this.productId = productId;
+        this.quantity = quantity;
+    }
+}
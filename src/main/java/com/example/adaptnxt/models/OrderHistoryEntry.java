@@ -0,0 +1,54 @@
+package com.example.adaptnxt.models;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Read model behind the customer order-history page: one flattened row per
+ * order, with its lines (product id, name, description, quantity, price)
+ * kept as a ready-to-serve JSON array. OrderHistoryProjector writes it in the
+ * same transaction as the order change, so a user's history is a single
+ * range read on (user_id, order_date).
+ */
+@Entity
+@Table(name = "order_history", indexes = {
+        @Index(name = "idx_order_history_user_date", columnList = "user_id, order_date, order_id")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderHistoryEntry {
+    
+    @Id
+    @Column(name = "order_id")
+    private Long orderId;
+    
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+    
+    @Column(name = "order_date")
+    private LocalDateTime orderDate;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(name = "order_status", nullable = false)
+    private Order.OrderStatus orderStatus;
+    
+    @Column(name = "total_amount", nullable = false, precision = 10, scale = 2)
+    private BigDecimal totalAmount;
+    
+    @Column(name = "shipping_address", nullable = false, length = 500)
+    private String shippingAddress;
+    
+    @Column(name = "item_count", nullable = false)
+    private Integer itemCount;
+    
+    // JSON array in the shape of the orderItems field of order responses
+    @Lob
+    @Column(name = "items_json", nullable = false)
+    private String itemsJson;
+}
@@ -15,8 +15,11 @@ import java.math.BigDecimal;
 @AllArgsConstructor
 public class OrderItem {
     
+    // Pooled ids so an order and its items go out as batched INSERTs
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "order_items_ids")
+    @TableGenerator(name = "order_items_ids", table = PooledIds.TABLE, pkColumnName = PooledIds.NAME_COLUMN,
+            valueColumnName = PooledIds.VALUE_COLUMN, pkColumnValue = "order_items", allocationSize = PooledIds.ALLOCATION_SIZE)
     private Long id;
     
     @ManyToOne(fetch = FetchType.LAZY)
@@ -33,4 +36,9 @@ public class OrderItem {
     
     @Column(name = "price_at_time", nullable = false, precision = 10, scale = 2)
     private BigDecimal priceAtTime;
+    
+    // Product category at checkout, so sales rollups reverse a line under the key it was recorded with.
+    // Null on lines written before it existed; those fall back to the product's current category.
+    @Column
+    private String category;
 }
@@ -0,0 +1,20 @@
+package com.example.adaptnxt.models;
+
+/**
+ * Table-backed pooled id generation for entities inserted many at a time.
+ * Hibernate reserves ALLOCATION_SIZE ids per round trip to TABLE, which,
+ * unlike IDENTITY, lets it batch the INSERTs themselves.
+ *
+ * The row stored for a generator holds the top of the next block to hand
+ * out, so it must stay at least ALLOCATION_SIZE above the largest id in use.
+ */
+public final class PooledIds {
+
+    public static final String TABLE = "id_generators";
+    public static final String NAME_COLUMN = "sequence_name";
+    public static final String VALUE_COLUMN = "next_val";
+    public static final int ALLOCATION_SIZE = 50;
+
+    private PooledIds() {
+    }
+}
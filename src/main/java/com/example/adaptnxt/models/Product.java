@@ -1,9 +1,11 @@
 package com.example.adaptnxt.models;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
 import jakarta.persistence.*;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
+import org.hibernate.annotations.ColumnDefault;
 import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.UpdateTimestamp;
 
@@ -11,7 +13,15 @@ import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "products")
+@Table(name = "products", indexes = {
+        // Seek indexes for the keyset listings: each sort key with id as tie-breaker, and the category filter
+        @Index(name = "idx_products_name_id", columnList = "name, id"),
+        @Index(name = "idx_products_price_id", columnList = "price, id"),
+        @Index(name = "idx_products_stock_id", columnList = "stock, id"),
+        @Index(name = "idx_products_category", columnList = "category"),
+        // Finds the few products in hot-SKU mode without scanning the catalog
+        @Index(name = "idx_products_stock_shards", columnList = "stock_shards")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -36,9 +46,22 @@ public class Product {
     @Column(nullable = false)
     private Integer stock;
     
+    // Number of stock shards in hot-SKU mode, 0 when stock lives in the stock column alone.
+    // While sharded, stock is a periodically refreshed sum of the shards.
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    @ColumnDefault("0")
+    @Column(name = "stock_shards", nullable = false)
+    private Integer stockShards = 0;
+    
     @Column(name = "image_url")
     private String imageUrl;
     
+    // Optimistic lock: concurrent read-modify-write updates fail instead of overwriting each other
+    @Version
+    @ColumnDefault("0")
+    @Column(nullable = false)
+    private Long version;
+    
     @CreationTimestamp
     @Column(name = "created_at", updatable = false)
     private LocalDateTime createdAt;
@@ -0,0 +1,39 @@
+package com.example.adaptnxt.models;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+/**
+ * One slice of a hot product's stock. While a product is sharded its
+ * checkouts decrement these rows instead of products.stock, so concurrent
+ * buyers contend on different rows.
+ */
+@Entity
+@Table(name = "product_stock_shards",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"product_id", "shard_no"}))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductStockShard {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(name = "product_id", nullable = false)
+    private Long productId;
+    
+    @Column(name = "shard_no", nullable = false)
+    private Integer shardNo;
+    
+    @Column(nullable = false)
+    private Integer stock;
+    
+    public ProductStockShard(Long productId, Integer shardNo, Integer stock) {
+        this.productId = productId;
+        this.shardNo = shardNo;
+        this.stock = stock;
+    }
+}
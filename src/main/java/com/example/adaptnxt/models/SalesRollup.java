@@ -0,0 +1,71 @@
+package com.example.adaptnxt.models;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Precomputed sales for one hour or day bucket: for all orders (TOTAL), one
+ * product (key = product id) or one category (key = category name). Units and
+ * revenue come from order lines at priceAtTime; cancelled orders are not
+ * counted. SalesRollupService keeps the rows current as orders change, so
+ * dashboards read these rows instead of scanning orders.
+ */
+@Entity
+@Table(name = "sales_rollups",
+        uniqueConstraints = @UniqueConstraint(name = "uk_sales_rollups_bucket",
+                columnNames = {"granularity", "dimension", "dimension_key", "bucket_start"}),
+        indexes = @Index(name = "idx_sales_rollups_range", columnList = "granularity, dimension, bucket_start"))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SalesRollup {
+    
+    // Keeps AUTO_INCREMENT: rows are only ever written by native upserts
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 10)
+    private Granularity granularity;
+    
+    @Column(name = "bucket_start", nullable = false)
+    private LocalDateTime bucketStart;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 10)
+    private Dimension dimension;
+    
+    @Column(name = "dimension_key", nullable = false)
+    private String dimensionKey;
+    
+    @Column(nullable = false)
+    private Long units;
+    
+    @Column(nullable = false, precision = 19, scale = 2)
+    private BigDecimal revenue;
+    
+    @Column(name = "order_count", nullable = false)
+    private Long orderCount;
+    
+    public enum Granularity {
+        HOUR, DAY;
+        
+        public LocalDateTime bucketOf(LocalDateTime time) {
+            return time.truncatedTo(this == HOUR ? ChronoUnit.HOURS : ChronoUnit.DAYS);
+        }
+    }
+    
+    public enum Dimension {
+        TOTAL, PRODUCT, CATEGORY
+    }
+    
+    // dimension_key of the TOTAL rows
+    public static final String TOTAL_KEY = "*";
+}
@@ -4,8 +4,14 @@ import com.example.adaptnxt.models.Cart;
 import com.example.adaptnxt.models.CartItem;
 import com.example.adaptnxt.models.Product;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -20,7 +26,34 @@ public interface CartItemRepository extends JpaRepository<CartItem, Long> {
     
     Optional<CartItem> findByCartIdAndProductId(Long cartId, Long productId);
     
+    // Adds to the product's line, creating it at the given price, in one statement on the unique (cart_id, product_id) key.
+    // Returns MySQL's affected-row count: 1 when the line was inserted, 2 when an existing line was updated.
+    @Modifying(flushAutomatically = true)
+    @Query(value = "INSERT INTO cart_items (cart_id, product_id, quantity, price_at_time) " +
+                   "VALUES (:cartId, :productId, :quantity, :price) AS added " +
+                   "ON DUPLICATE KEY UPDATE quantity = cart_items.quantity + added.quantity", nativeQuery = true)
+    int upsertQuantity(@Param("cartId") Long cartId, @Param("productId") Long productId,
+                       @Param("quantity") int quantity, @Param("price") BigDecimal price);
+    
     void deleteByCart(Cart cart);
     
     void deleteByCartId(Long cartId);
+    
+    @Query("SELECT ci.cart.id FROM CartItem ci WHERE ci.id = :cartItemId")
+    Optional<Long> findCartIdById(@Param("cartItemId") Long cartItemId);
+    
+    // Cart lines with their products in a single query
+    @Query("SELECT ci FROM CartItem ci JOIN FETCH ci.product WHERE ci.cart.id = :cartId")
+    List<CartItem> findByCartIdWithProduct(@Param("cartId") Long cartId);
+    
+    // Single DELETE statement instead of loading and removing each line
+    @Modifying
+    @Query("DELETE FROM CartItem ci WHERE ci.cart.id = :cartId")
+    int deleteAllByCartIdInBulk(@Param("cartId") Long cartId);
+    
+    // Lines of the given carts that are still older than the cutoff, in one DELETE
+    @Modifying
+    @Query("DELETE FROM CartItem ci WHERE ci.cart.id IN " +
+           "(SELECT c.id FROM Cart c WHERE c.id IN :cartIds AND c.updatedAt < :cutoff)")
+    int deleteByCartIdsUpdatedBefore(@Param("cartIds") Collection<Long> cartIds, @Param("cutoff") LocalDateTime cutoff);
 }
@@ -2,9 +2,17 @@ package com.example.adaptnxt.repository;
 
 import com.example.adaptnxt.models.Cart;
 import com.example.adaptnxt.models.User;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -14,5 +22,66 @@ public interface CartRepository extends JpaRepository<Cart, Long> {
     
     Optional<Cart> findByUserId(Long userId);
     
+    // The cart with its lines and their products in a single query
+    @Query("SELECT c FROM Cart c LEFT JOIN FETCH c.cartItems ci LEFT JOIN FETCH ci.product WHERE c.user.id = :userId")
+    Optional<Cart> findByUserIdWithItems(@Param("userId") Long userId);
+    
     boolean existsByUserId(Long userId);
+    
+    // Creates the user's cart unless it exists; the unique user_id key makes concurrent calls safe
+    @Modifying
+    @Query(value = "INSERT INTO carts (user_id, subtotal, item_count, created_at, updated_at) " +
+                   "VALUES (:userId, 0, 0, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP) " +
+                   "ON DUPLICATE KEY UPDATE user_id = user_id", nativeQuery = true)
+    int insertIfAbsent(@Param("userId") Long userId);
+    
+    // Applies a line change to the running totals in place, without reading the cart
+    @Modifying
+    @Query("UPDATE Cart c SET c.subtotal = c.subtotal + :amount, c.itemCount = c.itemCount + :items, " +
+           "c.updatedAt = CURRENT_TIMESTAMP WHERE c.id = :cartId")
+    int adjustTotals(@Param("cartId") Long cartId, @Param("amount") BigDecimal amount, @Param("items") int items);
+    
+    @Modifying
+    @Query("UPDATE Cart c SET c.subtotal = :subtotal, c.itemCount = :itemCount, c.updatedAt = CURRENT_TIMESTAMP WHERE c.id = :cartId")
+    int setTotals(@Param("cartId") Long cartId, @Param("subtotal") BigDecimal subtotal, @Param("itemCount") int itemCount);
+    
+    @Query("SELECT c.user.id FROM Cart c WHERE c.id = :cartId")
+    Optional<Long> findUserIdById(@Param("cartId") Long cartId);
+    
+    @Modifying
+    @Query("UPDATE Cart c SET c.subtotal = 0, c.itemCount = 0, c.updatedAt = CURRENT_TIMESTAMP WHERE c.id = :cartId")
+    int resetTotals(@Param("cartId") Long cartId);
+    
+    @Query("SELECT c.subtotal FROM Cart c WHERE c.id = :cartId")
+    Optional<BigDecimal> findSubtotalById(@Param("cartId") Long cartId);
+    
+    @Query("SELECT c.itemCount FROM Cart c WHERE c.id = :cartId")
+    Optional<Integer> findItemCountById(@Param("cartId") Long cartId);
+    
+    // Abandoned-cart sweep: the next ids after afterId of carts last changed before the cutoff
+    @Query("SELECT c.id FROM Cart c WHERE c.id > :afterId AND c.updatedAt < :cutoff ORDER BY c.id")
+    List<Long> findIdsUpdatedBefore(@Param("afterId") Long afterId, @Param("cutoff") LocalDateTime cutoff, Limit limit);
+    
+    // Re-checks the cutoff so a cart changed since it was picked survives
+    @Modifying
+    @Query("DELETE FROM Cart c WHERE c.id IN :cartIds AND c.updatedAt < :cutoff")
+    int deleteUpdatedBefore(@Param("cartIds") Collection<Long> cartIds, @Param("cutoff") LocalDateTime cutoff);
+    
+    // Which of the given carts still exist
+    @Query("SELECT c.id FROM Cart c WHERE c.id IN :cartIds")
+    List<Long> findIdsIn(@Param("cartIds") Collection<Long> cartIds);
+    
+    // Totals repair: the next ids after afterId, in id order
+    @Query("SELECT c.id FROM Cart c WHERE c.id > :afterId ORDER BY c.id")
+    List<Long> findIdsAfter(@Param("afterId") Long afterId, Limit limit);
+    
+    // Recomputes the running totals of the given carts where the stored values disagree with their lines
+    @Modifying
+    @Query("UPDATE Cart c SET " +
+           "c.subtotal = (SELECT COALESCE(SUM(ci.priceAtTime * ci.quantity), 0) FROM CartItem ci WHERE ci.cart.id = c.id), " +
+           "c.itemCount = (SELECT COUNT(ci) FROM CartItem ci WHERE ci.cart.id = c.id) " +
+           "WHERE c.id IN :cartIds AND (" +
+           "c.subtotal <> (SELECT COALESCE(SUM(ci.priceAtTime * ci.quantity), 0) FROM CartItem ci WHERE ci.cart.id = c.id) " +
+           "OR c.itemCount <> (SELECT COUNT(ci) FROM CartItem ci WHERE ci.cart.id = c.id))")
+    int repairTotals(@Param("cartIds") Collection<Long> cartIds);
 }
@@ -0,0 +1,21 @@
+package com.example.adaptnxt.repository;
+
+import com.example.adaptnxt.models.InventoryJournalEntry;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface InventoryJournalRepository extends JpaRepository<InventoryJournalEntry, Long> {
+    
+    // Oldest pending entries first, a bounded batch at a time
+    List<InventoryJournalEntry> findAllByOrderByIdAsc(Limit limit);
+    
+    // Units taken for a product that products.stock does not reflect yet
+    @Query("SELECT COALESCE(SUM(e.quantity), 0) FROM InventoryJournalEntry e WHERE e.productId = :productId")
+    long sumPendingQuantity(@Param("productId") Long productId);
+}
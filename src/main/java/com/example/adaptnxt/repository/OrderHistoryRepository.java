@@ -0,0 +1,55 @@
+package com.example.adaptnxt.repository;
+
+import com.example.adaptnxt.models.Order;
+import com.example.adaptnxt.models.OrderHistoryEntry;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface OrderHistoryRepository extends JpaRepository<OrderHistoryEntry, Long> {
+    
+    // Newest first, read straight off idx_order_history_user_date
+    List<OrderHistoryEntry> findByUserIdOrderByOrderDateDescOrderIdDesc(Long userId);
+    
+    // Header fields change in place; the lines of an order never change after checkout
+    @Modifying
+    @Query("UPDATE OrderHistoryEntry h SET h.orderStatus = :status, h.totalAmount = :totalAmount, " +
+           "h.shippingAddress = :shippingAddress WHERE h.orderId = :orderId")
+    int updateHeader(@Param("orderId") Long orderId,
+                     @Param("status") Order.OrderStatus status,
+                     @Param("totalAmount") BigDecimal totalAmount,
+                     @Param("shippingAddress") String shippingAddress);
+    
+    @Modifying
+    @Query("UPDATE OrderHistoryEntry h SET h.orderStatus = :status WHERE h.orderId IN :orderIds")
+    int updateStatus(@Param("orderIds") Collection<Long> orderIds, @Param("status") Order.OrderStatus status);
+    
+    // Backfill: writes the row unless the order was projected meanwhile, without reading it first
+    @Modifying
+    @Query(value = "INSERT INTO order_history (order_id, user_id, order_date, order_status, total_amount, " +
+                   "shipping_address, item_count, items_json) " +
+                   "VALUES (:orderId, :userId, :orderDate, :status, :totalAmount, :shippingAddress, :itemCount, :itemsJson) " +
+                   "ON DUPLICATE KEY UPDATE order_id = order_id", nativeQuery = true)
+    int insertIfAbsent(@Param("orderId") Long orderId,
+                       @Param("userId") Long userId,
+                       @Param("orderDate") LocalDateTime orderDate,
+                       @Param("status") String status,
+                       @Param("totalAmount") BigDecimal totalAmount,
+                       @Param("shippingAddress") String shippingAddress,
+                       @Param("itemCount") int itemCount,
+                       @Param("itemsJson") String itemsJson);
+    
+    // Orders (in id order, after afterId) that have no history row yet
+    @Query("SELECT o.id FROM Order o WHERE o.id > :afterId " +
+           "AND NOT EXISTS (SELECT h.orderId FROM OrderHistoryEntry h WHERE h.orderId = o.id) ORDER BY o.id")
+    List<Long> findUnprojectedOrderIds(@Param("afterId") Long afterId, Limit limit);
+}
@@ -2,12 +2,22 @@ package com.example.adaptnxt.repository;
 
 import com.example.adaptnxt.models.OrderItem;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface OrderItemRepository extends JpaRepository<OrderItem, Long> {
     
     List<OrderItem> findByOrderId(Long orderId);
+    
+    boolean existsByOrderId(Long orderId);
+    
+    // Order id, order date, product id, category at checkout, quantity and price of every line of the given orders
+    @Query("SELECT o.id, o.orderDate, p.id, COALESCE(oi.category, p.category), oi.quantity, oi.priceAtTime " +
+           "FROM OrderItem oi JOIN oi.order o JOIN oi.product p WHERE o.id IN :orderIds")
+    List<Object[]> findSalesLinesByOrderIds(@Param("orderIds") Collection<Long> orderIds);
 }
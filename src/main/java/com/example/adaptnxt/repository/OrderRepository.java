@@ -2,16 +2,40 @@ package com.example.adaptnxt.repository;
 
 import com.example.adaptnxt.models.Order;
 import com.example.adaptnxt.models.User;
+import com.example.adaptnxt.service.OrderExportRow;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.AvailableHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface OrderRepository extends JpaRepository<Order, Long> {
     
+    // Row-by-row streaming for the export queries only (see ProductRepository.STREAM_FETCH_SIZE)
+    String EXPORT_FETCH_SIZE = ProductRepository.STREAM_FETCH_SIZE;
+    
+    String EXPORT_SELECT = "SELECT new com.example.adaptnxt.service.OrderExportRow(o.id, o.orderDate, o.orderStatus, " +
+            "o.totalAmount, o.shippingAddress, u.id, u.username, u.email, oi.id, p.id, p.name, oi.quantity, oi.priceAtTime) " +
+            "FROM Order o JOIN o.user u LEFT JOIN o.orderItems oi LEFT JOIN oi.product p ";
+    
+    String EXPORT_ORDER_BY = "ORDER BY o.orderDate, o.id, oi.id";
+    
     List<Order> findByUser(User user);
     
     List<Order> findByUserId(Long userId);
@@ -25,4 +49,60 @@ public interface OrderRepository extends JpaRepository<Order, Long> {
     List<Order> findByOrderStatus(Order.OrderStatus orderStatus);
     
     Page<Order> findByOrderStatus(Order.OrderStatus orderStatus, Pageable pageable);
+    
+    // Keyset (seek) listings, served by idx_orders_user_date and idx_orders_status_date
+    Window<Order> findByUserId(Long userId, ScrollPosition position, Sort sort, Limit limit);
+    
+    Window<Order> findByOrderStatus(Order.OrderStatus orderStatus, ScrollPosition position, Sort sort, Limit limit);
+    
+    long countByUserId(Long userId);
+    
+    long countByOrderStatus(Order.OrderStatus orderStatus);
+    
+    @Query("SELECT o.id FROM Order o WHERE o.orderStatus = :status AND o.orderItems IS EMPTY ORDER BY o.id")
+    List<Long> findIdsByOrderStatusWithoutItems(@Param("status") Order.OrderStatus status);
+    
+    // Id, status and line count of each order, to validate a bulk status change against
+    @Query("SELECT o.id, o.orderStatus, SIZE(o.orderItems) FROM Order o WHERE o.id IN :ids")
+    List<Object[]> findStatusesByIdIn(@Param("ids") Collection<Long> ids);
+    
+    // Set-based status change; rows whose status moved on since they were read are left alone
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Order o SET o.orderStatus = :to, o.version = o.version + 1 " +
+           "WHERE o.id IN :ids AND o.orderStatus = :from")
+    int transitionStatus(@Param("ids") Collection<Long> ids,
+                         @Param("from") Order.OrderStatus from,
+                         @Param("to") Order.OrderStatus to);
+    
+    // Orders with everything their responses walk (user, items, items' products) in a single query
+    @Query("SELECT o FROM Order o JOIN FETCH o.user LEFT JOIN FETCH o.orderItems oi LEFT JOIN FETCH oi.product")
+    List<Order> findAllWithDetails();
+    
+    @Query("SELECT o FROM Order o JOIN FETCH o.user LEFT JOIN FETCH o.orderItems oi LEFT JOIN FETCH oi.product " +
+           "WHERE o.id = :id")
+    Optional<Order> findByIdWithDetails(@Param("id") Long id);
+    
+    @Query("SELECT o FROM Order o LEFT JOIN FETCH o.orderItems oi LEFT JOIN FETCH oi.product " +
+           "WHERE o.user.id = :userId ORDER BY o.orderDate DESC")
+    List<Order> findByUserIdWithItemsOrderByOrderDateDesc(@Param("userId") Long userId);
+    
+    @Query("SELECT o FROM Order o LEFT JOIN FETCH o.orderItems oi LEFT JOIN FETCH oi.product WHERE o.id IN :ids")
+    List<Order> findByIdInWithItems(@Param("ids") Collection<Long> ids);
+    
+    // Order lines for the finance export, oldest first and grouped by order, streamed row by row
+    // (caller must hold a transaction and close the stream)
+    @QueryHints({
+        @QueryHint(name = AvailableHints.HINT_FETCH_SIZE, value = EXPORT_FETCH_SIZE),
+        @QueryHint(name = AvailableHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query(EXPORT_SELECT + "WHERE o.orderDate >= :from AND o.orderDate < :to " + EXPORT_ORDER_BY)
+    Stream<OrderExportRow> streamForExport(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+    
+    @QueryHints({
+        @QueryHint(name = AvailableHints.HINT_FETCH_SIZE, value = EXPORT_FETCH_SIZE),
+        @QueryHint(name = AvailableHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query(EXPORT_SELECT + "WHERE o.orderStatus = :status AND o.orderDate >= :from AND o.orderDate < :to " + EXPORT_ORDER_BY)
+    Stream<OrderExportRow> streamForExportByStatus(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to,
+                                                   @Param("status") Order.OrderStatus status);
 }
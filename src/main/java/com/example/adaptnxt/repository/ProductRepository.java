@@ -1,17 +1,32 @@
 package com.example.adaptnxt.repository;
 
 import com.example.adaptnxt.models.Product;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.AvailableHints;
+
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
 @Repository
-public interface ProductRepository extends JpaRepository<Product, Long> {
+public interface ProductRepository extends JpaRepository<Product, Long>, ProductRepositoryCustom {
+    
+    // Integer.MIN_VALUE tells MySQL Connector/J to stream this forward-only, read-only result row by row,
+    // for these queries only; every other statement keeps the driver's default of fetching the whole result
+    String STREAM_FETCH_SIZE = "" + Integer.MIN_VALUE;
     
     // Find products by category
     Page<Product> findByCategory(String category, Pageable pageable);
@@ -28,4 +43,53 @@ public interface ProductRepository extends JpaRepository<Product, Long> {
     
     // Find all products ordered by name
     List<Product> findAllByOrderByNameAsc();
+    
+    // Keyset (seek) scrolling variants of the paged listings above
+    Window<Product> findAllBy(ScrollPosition position, Sort sort, Limit limit);
+    
+    Window<Product> findByCategory(String category, ScrollPosition position, Sort sort, Limit limit);
+    
+    Window<Product> findByStockGreaterThan(Integer stock, ScrollPosition position, Sort sort, Limit limit);
+    
+    long countByCategory(String category);
+    
+    long countByStockGreaterThan(Integer stock);
+    
+    // Guarded decrement: only succeeds (returns 1) when enough stock is left
+    @Modifying
+    @Query("UPDATE Product p SET p.stock = p.stock - :quantity, p.updatedAt = CURRENT_TIMESTAMP, p.version = p.version + 1 WHERE p.id = :id AND p.stock >= :quantity AND p.stockShards = 0")
+    int decrementStock(@Param("id") Long id, @Param("quantity") Integer quantity);
+    
+    // Which of the given products are in hot-SKU mode and take stock from their shards
+    @Query("SELECT p.id FROM Product p WHERE p.id IN :ids AND p.stockShards > 0")
+    List<Long> findShardedIds(@Param("ids") Collection<Long> ids);
+    
+    // Range read on idx_products_stock_shards; few products are ever sharded
+    @Query("SELECT p.id FROM Product p WHERE p.stockShards > 0")
+    List<Long> findAllShardedIds();
+    
+    // Refreshes the stock column of the given sharded products from the sum of their shards
+    @Modifying
+    @Query("UPDATE Product p SET p.stock = (SELECT COALESCE(SUM(s.stock), 0) FROM ProductStockShard s WHERE s.productId = p.id), " +
+           "p.version = p.version + 1 " +
+           "WHERE p.id IN :ids AND p.stockShards > 0 " +
+           "AND p.stock <> (SELECT COALESCE(SUM(s.stock), 0) FROM ProductStockShard s WHERE s.productId = p.id)")
+    int rollUpShardedStock(@Param("ids") Collection<Long> ids);
+    
+    // Stream all products row by row (caller must hold a transaction, close the stream, and issue no other
+    // statement on the connection until it is closed)
+    @QueryHints({
+        @QueryHint(name = AvailableHints.HINT_FETCH_SIZE, value = STREAM_FETCH_SIZE),
+        @QueryHint(name = AvailableHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT p FROM Product p ORDER BY p.id")
+    Stream<Product> streamAll();
+    
+    // Stream all products ordered by name row by row, on the same terms
+    @QueryHints({
+        @QueryHint(name = AvailableHints.HINT_FETCH_SIZE, value = STREAM_FETCH_SIZE),
+        @QueryHint(name = AvailableHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT p FROM Product p ORDER BY p.name ASC, p.id ASC")
+    Stream<Product> streamAllOrderByName();
 }
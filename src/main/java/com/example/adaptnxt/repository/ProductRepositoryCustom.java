@@ -0,0 +1,11 @@
+package com.example.adaptnxt.repository;
+
+import java.util.List;
+import java.util.Map;
+
+public interface ProductRepositoryCustom {
+    
+    // Decrement stock for several products in one guarded UPDATE; all-or-nothing. Returns the products that
+    // turned out to be in hot-SKU mode, which are left untouched for the caller to take from their shards.
+    List<Long> decrementStockBatch(Map<Long, Integer> quantities);
+}
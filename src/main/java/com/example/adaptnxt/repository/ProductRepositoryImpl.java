@@ -0,0 +1,130 @@
+package com.example.adaptnxt.repository;
+
+import org.hibernate.Session;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Set-based stock updates that Spring Data cannot derive. Runs on the JDBC
+ * connection of the current transaction, so callers must be transactional.
+ */
+public class ProductRepositoryImpl implements ProductRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<Long> decrementStockBatch(Map<Long, Integer> quantities) {
+        if (quantities.isEmpty()) {
+            return List.of();
+        }
+
+        entityManager.flush();
+        return entityManager.unwrap(Session.class).doReturningWork(connection -> {
+            Savepoint savepoint = connection.setSavepoint();
+            if (decrement(connection, quantities) == quantities.size()) {
+                connection.releaseSavepoint(savepoint);
+                return List.of();
+            }
+            // Undo the rows that did fit, then look again with the rows locked: a product switched to
+            // sharded stock since the caller checked is handed back instead of failing the order
+            connection.rollback(savepoint);
+            Map<Long, Integer> unsharded = new TreeMap<>();
+            List<Long> sharded = new ArrayList<>();
+            lockAndSplitSharded(connection, quantities, unsharded, sharded);
+            if (!sharded.isEmpty() && unsharded.size() + sharded.size() == quantities.size()
+                    && (unsharded.isEmpty() || decrement(connection, unsharded) == unsharded.size())) {
+                connection.releaseSavepoint(savepoint);
+                return sharded;
+            }
+            connection.rollback(savepoint);
+            throw new RuntimeException(describeShortfall(connection, quantities));
+        });
+    }
+
+    // UPDATE products p JOIN (SELECT ? id, ? qty UNION ALL ...) d ... WHERE p.stock >= d.qty
+    private static int decrement(Connection connection, Map<Long, Integer> quantities) throws SQLException {
+        StringBuilder rows = new StringBuilder();
+        for (int i = 0; i < quantities.size(); i++) {
+            rows.append(i == 0 ? "SELECT ? AS id, ? AS qty" : " UNION ALL SELECT ?, ?");
+        }
+        String sql = "UPDATE products p JOIN (" + rows + ") d ON p.id = d.id "
+                + "SET p.stock = p.stock - d.qty, p.updated_at = CURRENT_TIMESTAMP, p.version = p.version + 1 "
+                + "WHERE p.stock >= d.qty AND p.stock_shards = 0";
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            int index = 1;
+            for (Map.Entry<Long, Integer> entry : quantities.entrySet()) {
+                statement.setLong(index++, entry.getKey());
+                statement.setInt(index++, entry.getValue());
+            }
+            return statement.executeUpdate();
+        }
+    }
+
+    private static void lockAndSplitSharded(Connection connection, Map<Long, Integer> quantities,
+                                            Map<Long, Integer> unsharded, List<Long> sharded) throws SQLException {
+        String sql = "SELECT id, stock_shards FROM products WHERE id IN (" + placeholders(quantities.size())
+                + ") ORDER BY id FOR UPDATE";
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            int index = 1;
+            for (Long id : quantities.keySet()) {
+                statement.setLong(index++, id);
+            }
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    long id = rs.getLong("id");
+                    if (rs.getInt("stock_shards") > 0) {
+                        sharded.add(id);
+                    } else {
+                        unsharded.put(id, quantities.get(id));
+                    }
+                }
+            }
+        }
+    }
+
+    private static String placeholders(int count) {
+        StringBuilder placeholders = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            placeholders.append(i == 0 ? "?" : ", ?");
+        }
+        return placeholders.toString();
+    }
+
+    private String describeShortfall(Connection connection, Map<Long, Integer> quantities) throws SQLException {
+        String sql = "SELECT id, name, stock FROM products WHERE id IN (" + placeholders(quantities.size()) + ")";
+        List<Long> found = new ArrayList<>();
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            int index = 1;
+            for (Long id : quantities.keySet()) {
+                statement.setLong(index++, id);
+            }
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    long id = rs.getLong("id");
+                    found.add(id);
+                    if (rs.getInt("stock") < quantities.get(id)) {
+                        return "Insufficient stock for product: " + rs.getString("name");
+                    }
+                }
+            }
+        }
+        for (Long id : quantities.keySet()) {
+            if (!found.contains(id)) {
+                return "Product not found with id: " + id;
+            }
+        }
+        return "Insufficient stock for one or more products";
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.adaptnxt.repository;
+
+import com.example.adaptnxt.models.ProductStockShard;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface ProductStockShardRepository extends JpaRepository<ProductStockShard, Long> {
+    
+    // Shards that can serve the whole quantity on their own (plain read, no locks)
+    @Query("SELECT s.shardNo FROM ProductStockShard s WHERE s.productId = :productId AND s.stock >= :quantity")
+    List<Integer> findShardNosWithStock(@Param("productId") Long productId, @Param("quantity") int quantity);
+    
+    // Guarded decrement of one shard; returns 0 if the shard no longer holds enough
+    @Modifying
+    @Query("UPDATE ProductStockShard s SET s.stock = s.stock - :quantity " +
+           "WHERE s.productId = :productId AND s.shardNo = :shardNo AND s.stock >= :quantity")
+    int decrementShard(@Param("productId") Long productId, @Param("shardNo") int shardNo, @Param("quantity") int quantity);
+    
+    @Query("SELECT COALESCE(SUM(s.stock), 0) FROM ProductStockShard s WHERE s.productId = :productId")
+    long sumStock(@Param("productId") Long productId);
+    
+    // Locks every shard of the product in a fixed order, for operations that span shards
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM ProductStockShard s WHERE s.productId = :productId ORDER BY s.shardNo")
+    List<ProductStockShard> findAllForUpdate(@Param("productId") Long productId);
+    
+    @Modifying
+    @Query("DELETE FROM ProductStockShard s WHERE s.productId = :productId")
+    int deleteByProductIdInBulk(@Param("productId") Long productId);
+}
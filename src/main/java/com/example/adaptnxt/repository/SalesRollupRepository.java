@@ -0,0 +1,31 @@
+package com.example.adaptnxt.repository;
+
+import com.example.adaptnxt.models.SalesRollup;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface SalesRollupRepository extends JpaRepository<SalesRollup, Long> {
+    
+    // Every key of one dimension in [from, to), read off idx_sales_rollups_range
+    @Query("SELECT r FROM SalesRollup r WHERE r.granularity = :granularity AND r.dimension = :dimension " +
+           "AND r.bucketStart >= :from AND r.bucketStart < :to ORDER BY r.bucketStart, r.dimensionKey")
+    List<SalesRollup> findRange(@Param("granularity") SalesRollup.Granularity granularity,
+                                @Param("dimension") SalesRollup.Dimension dimension,
+                                @Param("from") LocalDateTime from,
+                                @Param("to") LocalDateTime to);
+    
+    // One product or category in [from, to), read off uk_sales_rollups_bucket
+    @Query("SELECT r FROM SalesRollup r WHERE r.granularity = :granularity AND r.dimension = :dimension " +
+           "AND r.dimensionKey = :key AND r.bucketStart >= :from AND r.bucketStart < :to ORDER BY r.bucketStart")
+    List<SalesRollup> findRangeForKey(@Param("granularity") SalesRollup.Granularity granularity,
+                                      @Param("dimension") SalesRollup.Dimension dimension,
+                                      @Param("key") String key,
+                                      @Param("from") LocalDateTime from,
+                                      @Param("to") LocalDateTime to);
+}
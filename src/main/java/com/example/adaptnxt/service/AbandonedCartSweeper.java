@@ -0,0 +1,161 @@
+package com.example.adaptnxt.service;
+
+import com.example.adaptnxt.repository.CartItemRepository;
+import com.example.adaptnxt.repository.CartRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Purges carts nobody has changed for cart.sweeper.max-age-days. Carts are
+ * walked in id order a chunk at a time; each chunk deletes its lines and its
+ * carts with two bulk statements in a short transaction of its own, and the
+ * sweeper pauses between chunks so the purge never holds locks for long or
+ * crowds out shopper traffic.
+ */
+@Component
+public class AbandonedCartSweeper {
+
+    private static final Logger log = LoggerFactory.getLogger(AbandonedCartSweeper.class);
+
+    private final Object sweepLock = new Object();
+
+    private final AtomicLong runs = new AtomicLong();
+    private final AtomicLong cartsDeleted = new AtomicLong();
+    private final AtomicLong itemsDeleted = new AtomicLong();
+    private volatile Map<String, Object> lastRun = Map.of();
+
+    @Autowired
+    private CartRepository cartRepository;
+
+    @Autowired
+    private CartItemRepository cartItemRepository;
+
+    @Autowired
+    private CartStore cartStore;
+
+    @Autowired
+    private StockHoldService stockHoldService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${cart.sweeper.enabled:true}")
+    private boolean enabled;
+
+    @Value("${cart.sweeper.max-age-days:30}")
+    private int maxAgeDays;
+
+    @Value("${cart.sweeper.chunk-size:500}")
+    private int chunkSize;
+
+    @Value("${cart.sweeper.pause-ms:200}")
+    private long pauseMillis;
+
+    @Scheduled(cron = "${cart.sweeper.cron:0 30 3 * * *}")
+    public void scheduledSweep() {
+        if (enabled) {
+            sweep();
+        }
+    }
+
+    // Runs one full pass and returns what it reclaimed
+    public Map<String, Object> sweep() {
+        synchronized (sweepLock) {
+            long started = System.currentTimeMillis();
+            LocalDateTime startedAt = LocalDateTime.now();
+            LocalDateTime cutoff = startedAt.minusDays(maxAgeDays);
+            TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+            long afterId = 0;
+            int carts = 0;
+            int items = 0;
+            int chunks = 0;
+
+            while (true) {
+                List<Long> candidates = cartRepository.findIdsUpdatedBefore(afterId, cutoff, Limit.of(chunkSize));
+                if (candidates.isEmpty()) {
+                    break;
+                }
+                afterId = candidates.get(candidates.size() - 1);
+                List<Long> cartIds = candidates.stream()
+                        .filter(cartId -> !cartStore.isInMemory(cartId))
+                        .collect(Collectors.toList());
+                if (!cartIds.isEmpty()) {
+                    Set<Long> deletedIds = new HashSet<>(cartIds);
+                    int[] deleted = transaction.execute(status -> {
+                        int[] counts = {
+                                cartItemRepository.deleteByCartIdsUpdatedBefore(cartIds, cutoff),
+                                cartRepository.deleteUpdatedBefore(cartIds, cutoff)};
+                        // Carts changed since they were picked survive the delete and keep their holds
+                        deletedIds.removeAll(cartRepository.findIdsIn(cartIds));
+                        return counts;
+                    });
+                    items += deleted[0];
+                    carts += deleted[1];
+                    deletedIds.forEach(stockHoldService::releaseCart);
+                }
+                chunks++;
+                if (candidates.size() < chunkSize || !pause()) {
+                    break;
+                }
+            }
+
+            runs.incrementAndGet();
+            cartsDeleted.addAndGet(carts);
+            itemsDeleted.addAndGet(items);
+            Map<String, Object> run = new LinkedHashMap<>();
+            run.put("startedAt", startedAt);
+            run.put("cutoff", cutoff);
+            run.put("chunks", chunks);
+            run.put("cartsDeleted", carts);
+            run.put("itemsDeleted", items);
+            run.put("durationMs", System.currentTimeMillis() - started);
+            lastRun = run;
+            if (carts > 0) {
+                log.info("Abandoned-cart sweep deleted {} carts and {} cart items in {} chunks", carts, items, chunks);
+            }
+            return run;
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("maxAgeDays", maxAgeDays);
+        stats.put("chunkSize", chunkSize);
+        stats.put("runs", runs.get());
+        stats.put("cartsDeleted", cartsDeleted.get());
+        stats.put("itemsDeleted", itemsDeleted.get());
+        stats.put("lastRun", lastRun);
+        return stats;
+    }
+
+    // Gives other transactions room between chunks; false if the thread was interrupted
+    private boolean pause() {
+        if (pauseMillis <= 0) {
+            return true;
+        }
+        try {
+            Thread.sleep(pauseMillis);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package com.example.adaptnxt.service;
+
+import com.example.adaptnxt.models.Order;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Async checkout: the request only writes an empty PENDING order and returns
+ * its id; a fixed pool of workers then validates the cart, writes the items,
+ * takes the stock and clears the cart in the usual checkout transaction. If
+ * that fails the order is cancelled and the reason is kept for polling.
+ *
+ * At most order.async.queue-capacity checkouts wait or run at once; beyond
+ * that new ones are refused instead of queueing without bound. Accepted
+ * orders still empty at startup (the process stopped before a worker got to
+ * them) are queued again. Only the latest failure reasons are kept for
+ * polling; an older order's status still reads CANCELLED, without the reason.
+ */
+@Service
+public class AsyncCheckoutService {
+
+    private static final Logger log = LoggerFactory.getLogger(AsyncCheckoutService.class);
+
+    private static final int MAX_REMEMBERED_FAILURES = 10000;
+
+    // Oldest reasons give way to new ones once the limit is reached
+    private final Map<Long, String> failures = Collections.synchronizedMap(new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, String> eldest) {
+            if (size() <= MAX_REMEMBERED_FAILURES) {
+                return false;
+            }
+            log.info("Forgetting why async checkout of order {} failed: {}", eldest.getKey(), eldest.getValue());
+            return true;
+        }
+    });
+    private final Map<Long, Boolean> inFlight = new ConcurrentHashMap<>();
+
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    @Autowired
+    private OrderService orderService;
+
+    @Value("${order.async.workers:8}")
+    private int workers;
+
+    @Value("${order.async.queue-capacity:1000}")
+    private int queueCapacity;
+
+    private ExecutorService executor;
+    private Semaphore capacity;
+
+    @PostConstruct
+    void start() {
+        AtomicInteger threadNumber = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(workers, runnable -> {
+            Thread thread = new Thread(runnable, "checkout-worker-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        capacity = new Semaphore(queueCapacity);
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        executor.shutdown();
+        executor.awaitTermination(30, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Writes the PENDING order and queues the rest of the checkout. Throws
+     * CheckoutBusyException without writing anything when the queue is full.
+     */
+    public Order placeOrder(Long userId, String shippingAddress) {
+        if (!capacity.tryAcquire()) {
+            rejected.incrementAndGet();
+            throw new CheckoutBusyException();
+        }
+        Order order;
+        try {
+            order = orderService.acceptOrder(userId, shippingAddress);
+        } catch (RuntimeException e) {
+            capacity.release();
+            throw e;
+        }
+        accepted.incrementAndGet();
+        submit(order.getId());
+        return order;
+    }
+
+    // Status of an order as the async checkout sees it; empty when the order does not exist
+    public Optional<Map<String, Object>> getStatus(Long orderId) {
+        return orderService.getOrderById(orderId).map(order -> {
+            Map<String, Object> status = new LinkedHashMap<>();
+            status.put("id", order.getId());
+            status.put("status", order.getOrderStatus().toString());
+            status.put("processing", inFlight.containsKey(orderId));
+            status.put("totalAmount", order.getTotalAmount());
+            String failure = failures.get(orderId);
+            if (failure != null) {
+                status.put("error", failure);
+            }
+            return status;
+        });
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("workers", workers);
+        stats.put("queueCapacity", queueCapacity);
+        stats.put("inFlight", inFlight.size());
+        stats.put("accepted", accepted.get());
+        stats.put("rejected", rejected.get());
+        stats.put("completed", completed.get());
+        stats.put("failed", failed.get());
+        return stats;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeAcceptedOrders() {
+        List<Long> orderIds = orderService.getAcceptedOrderIds();
+        for (Long orderId : orderIds) {
+            capacity.acquireUninterruptibly();
+            submit(orderId);
+        }
+        if (!orderIds.isEmpty()) {
+            log.warn("Re-queued {} accepted orders left unfinished by the previous run", orderIds.size());
+        }
+    }
+
+    // The caller holds a capacity permit, which the task gives back when it ends
+    private void submit(Long orderId) {
+        inFlight.put(orderId, Boolean.TRUE);
+        try {
+            executor.execute(() -> {
+                try {
+                    complete(orderId);
+                } finally {
+                    inFlight.remove(orderId);
+                    capacity.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Shutting down; the order stays accepted and is resumed on the next start
+            inFlight.remove(orderId);
+            capacity.release();
+        }
+    }
+
+    private void complete(Long orderId) {
+        try {
+            orderService.completeAcceptedOrder(orderId);
+            completed.incrementAndGet();
+        } catch (RuntimeException e) {
+            try {
+                if (!orderService.cancelAcceptedOrder(orderId)) {
+                    // Another worker (e.g. on a second instance resuming it) filled the order first
+                    completed.incrementAndGet();
+                    return;
+                }
+            } catch (RuntimeException cancelFailure) {
+                log.error("Could not cancel failed order {}", orderId, cancelFailure);
+            }
+            failed.incrementAndGet();
+            log.warn("Async checkout of order {} failed: {}", orderId, e.getMessage());
+            failures.put(orderId, e.getMessage());
+        }
+    }
+
+    // Refusal when every checkout slot is taken; callers should retry later
+    public static class CheckoutBusyException extends RuntimeException {
+        public CheckoutBusyException() {
+            super("Checkout is busy, please retry shortly");
+        }
+    }
+}
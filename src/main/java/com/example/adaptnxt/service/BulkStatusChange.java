@@ -0,0 +1,30 @@
+package com.example.adaptnxt.service;
+
+import com.example.adaptnxt.models.Order;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Request to move many orders to one status. When fromStatus is set, only
+ * orders currently in that status are moved; otherwise each order is moved
+ * from whatever status it is in, as long as Order.OrderStatus allows it.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkStatusChange {
+
+    // What happened to one order of the request
+    public enum Outcome {
+        UPDATED, UNCHANGED, NOT_FOUND, STATUS_MISMATCH, ILLEGAL_TRANSITION, CHECKOUT_IN_PROGRESS, CONFLICT
+    }
+
+    private List<Long> orderIds;
+
+    private Order.OrderStatus status;
+
+    private Order.OrderStatus fromStatus;
+}
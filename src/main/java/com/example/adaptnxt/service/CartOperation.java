@@ -0,0 +1,28 @@
+package com.example.adaptnxt.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One change in a batch cart update. ADD adds quantity to the product's line;
+ * SET sets the line's quantity (0 or less removes it); REMOVE drops the line.
+ * SET and REMOVE name the line by cartItemId or by productId.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CartOperation {
+
+    public enum Type {
+        ADD, SET, REMOVE
+    }
+
+    private Type op;
+
+    private Long productId;
+
+    private Long cartItemId;
+
+    private Integer quantity;
+}
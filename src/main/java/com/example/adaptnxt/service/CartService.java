@@ -6,18 +6,36 @@ import com.example.adaptnxt.models.Product;
 import com.example.adaptnxt.models.User;
 import com.example.adaptnxt.repository.CartRepository;
 import com.example.adaptnxt.repository.CartItemRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 @Service
 @Transactional
 public class CartService {
 
+    private static final Logger log = LoggerFactory.getLogger(CartService.class);
+
     @Autowired
     private CartRepository cartRepository;
 
@@ -27,96 +45,257 @@ public class CartService {
     @Autowired
     private ProductService productService;
 
+    @Autowired
+    private StockHoldService stockHoldService;
+
+    @Autowired
+    private CartStore cartStore;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${cart.totals.repair-chunk-size:500}")
+    private int repairChunkSize;
+
     public Cart getOrCreateCart(User user) {
-        return cartRepository.findByUser(user)
-                .orElseGet(() -> {
-                    Cart cart = new Cart();
-                    cart.setUser(user);
-                    return cartRepository.save(cart);
-                });
+        Cart cart = cartStore.getOrCreateCartWithItems(user.getId());
+        stockHoldService.renewCart(cart.getId());
+        return cart;
     }
 
     public Optional<Cart> getCartByUserId(Long userId) {
-        return cartRepository.findByUserId(userId);
+        return cartStore.findCart(userId);
     }
 
     public List<CartItem> getCartItems(Long cartId) {
-        return cartItemRepository.findByCartId(cartId);
+        return cartStore.getItems(cartId);
     }
 
     public CartItem addItemToCart(Long userId, Long productId, Integer quantity) {
-        Cart cart = cartRepository.findByUserId(userId)
-                .orElseGet(() -> {
-                    Cart newCart = new Cart();
-                    User user = new User();
-                    user.setId(userId);
-                    newCart.setUser(user);
-                    return cartRepository.save(newCart);
-                });
+        Cart cart = cartStore.getOrCreateCart(userId);
 
         Product product = productService.getProductById(productId)
                 .orElseThrow(() -> new RuntimeException("Product not found with id: " + productId));
 
-        // Check if product is available
-        if (!productService.isProductAvailable(productId, quantity)) {
-            throw new RuntimeException("Insufficient stock for product: " + product.getName());
-        }
+        // Quantity the line will have, so the hold covers all of it
+        int newQuantity = cartStore.findItem(cart.getId(), productId).map(CartItem::getQuantity).orElse(0) + quantity;
 
-        // Check if item already exists in cart
-        Optional<CartItem> existingItem = cartItemRepository.findByCartAndProduct(cart, product);
-        
-        if (existingItem.isPresent()) {
-            // Update existing item
-            CartItem cartItem = existingItem.get();
-            cartItem.setQuantity(cartItem.getQuantity() + quantity);
-            return cartItemRepository.save(cartItem);
-        } else {
-            // Create new cart item
-            CartItem cartItem = new CartItem();
-            cartItem.setCart(cart);
-            cartItem.setProduct(product);
-            cartItem.setQuantity(quantity);
-            cartItem.setPriceAtTime(product.getPrice());
-            return cartItemRepository.save(cartItem);
-        }
+        // Hold the stock for this cart (fails if not enough is left after other carts' holds)
+        holdStock(cart.getId(), product, newQuantity);
+        stockHoldService.renewCart(cart.getId());
+
+        // Creates the line or adds to it in one step, so concurrent adds never duplicate it
+        return cartStore.addItem(cart, product, quantity);
     }
 
     public CartItem updateCartItem(Long cartItemId, Integer quantity) {
-        return cartItemRepository.findById(cartItemId)
+        return cartStore.findItem(cartItemId)
                 .map(cartItem -> {
+                    Long cartId = cartItem.getCart().getId();
                     if (quantity <= 0) {
-                        cartItemRepository.delete(cartItem);
+                        cartStore.removeItem(cartItem);
+                        Long productId = cartItem.getProduct().getId();
+                        TransactionHooks.afterCommit(() -> stockHoldService.release(cartId, productId));
                         return null;
                     }
                     
-                    // Check if sufficient stock is available
-                    if (!productService.isProductAvailable(cartItem.getProduct().getId(), quantity)) {
-                        throw new RuntimeException("Insufficient stock for product: " + cartItem.getProduct().getName());
-                    }
+                    // Re-hold the new quantity (fails if not enough stock is left)
+                    holdStock(cartId, cartItem.getProduct(), quantity);
+                    stockHoldService.renewCart(cartId);
                     
-                    cartItem.setQuantity(quantity);
-                    return cartItemRepository.save(cartItem);
+                    return cartStore.updateQuantity(cartItem, quantity);
                 })
                 .orElseThrow(() -> new RuntimeException("Cart item not found with id: " + cartItemId));
     }
 
     public void removeItemFromCart(Long cartItemId) {
-        cartItemRepository.deleteById(cartItemId);
+        cartStore.findItem(cartItemId).ifPresent(cartItem -> {
+            cartStore.removeItem(cartItem);
+            Long cartId = cartItem.getCart().getId();
+            Long productId = cartItem.getProduct().getId();
+            TransactionHooks.afterCommit(() -> stockHoldService.release(cartId, productId));
+        });
+    }
+
+    /**
+     * Applies add, set and remove operations to the user's cart in one
+     * transaction. Operations are folded into one target quantity per product;
+     * the products whose lines change are read with a single query and held
+     * against stock before any line is touched, and the cart comes back once
+     * with its lines and totals. Any invalid operation or stock shortfall fails
+     * the whole batch.
+     */
+    public Cart applyBatch(Long userId, List<CartOperation> operations) {
+        Cart cart = cartStore.getOrCreateCart(userId);
+        Long cartId = cart.getId();
+
+        Map<Long, CartItem> linesByProduct = new HashMap<>();
+        Map<Long, Long> productIdsByItem = new HashMap<>();
+        for (CartItem item : cartStore.getItems(cartId)) {
+            linesByProduct.put(item.getProduct().getId(), item);
+            productIdsByItem.put(item.getId(), item.getProduct().getId());
+        }
+
+        // Quantity each touched product ends up with, in the order it was first touched
+        Map<Long, Integer> targets = new LinkedHashMap<>();
+        for (CartOperation operation : operations) {
+            Long productId = resolveProductId(operation, productIdsByItem);
+            CartItem line = linesByProduct.get(productId);
+            int current = targets.getOrDefault(productId, line == null ? 0 : line.getQuantity());
+            switch (operation.getOp()) {
+                case ADD -> {
+                    if (operation.getQuantity() == null || operation.getQuantity() <= 0) {
+                        throw new RuntimeException("Quantity to add must be positive for product: " + productId);
+                    }
+                    targets.put(productId, current + operation.getQuantity());
+                }
+                case SET -> {
+                    if (operation.getQuantity() == null) {
+                        throw new RuntimeException("Quantity is required to set product: " + productId);
+                    }
+                    targets.put(productId, Math.max(operation.getQuantity(), 0));
+                }
+                case REMOVE -> targets.put(productId, 0);
+            }
+        }
+
+        // Lines that change and stay in the cart get their hold moved, with all their products read in one query
+        Set<Long> changed = targets.entrySet().stream()
+                .filter(target -> {
+                    CartItem line = linesByProduct.get(target.getKey());
+                    return target.getValue() > 0 && (line == null || target.getValue() != line.getQuantity().intValue());
+                })
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toSet());
+        Map<Long, Product> products = productService.getProductsByIds(changed);
+        for (Long productId : changed) {
+            Product product = products.get(productId);
+            if (product == null) {
+                throw new RuntimeException("Product not found with id: " + productId);
+            }
+            if (!stockHoldService.hold(cartId, productId, targets.get(productId), productService.getAvailableStock(product))) {
+                throw new RuntimeException("Insufficient stock for product: " + product.getName());
+            }
+        }
+
+        targets.forEach((productId, quantity) -> {
+            CartItem line = linesByProduct.get(productId);
+            if (line == null) {
+                if (quantity > 0) {
+                    cartStore.addItem(cart, products.get(productId), quantity);
+                }
+            } else if (quantity == 0) {
+                cartStore.removeItem(line);
+                TransactionHooks.afterCommit(() -> stockHoldService.release(cartId, productId));
+            } else if (changed.contains(productId)) {
+                cartStore.updateQuantity(line, quantity);
+            }
+        });
+        stockHoldService.renewCart(cartId);
+
+        List<CartItem> items = cartStore.getItems(cartId);
+        Cart result = new Cart();
+        result.setId(cartId);
+        result.setCreatedAt(cart.getCreatedAt());
+        result.setUpdatedAt(LocalDateTime.now());
+        result.setCartItems(items);
+        result.setItemCount(items.size());
+        result.setSubtotal(cartStore.getSubtotal(cartId));
+        return result;
+    }
+
+    private Long resolveProductId(CartOperation operation, Map<Long, Long> productIdsByItem) {
+        if (operation.getOp() == null) {
+            throw new RuntimeException("Cart operation type is required");
+        }
+        if (operation.getOp() != CartOperation.Type.ADD && operation.getCartItemId() != null) {
+            Long productId = productIdsByItem.get(operation.getCartItemId());
+            if (productId == null) {
+                throw new RuntimeException("Cart item not found with id: " + operation.getCartItemId());
+            }
+            return productId;
+        }
+        if (operation.getProductId() == null) {
+            throw new RuntimeException("Product id is required for " + operation.getOp() + " operation");
+        }
+        return operation.getProductId();
     }
 
     public void clearCart(Long userId) {
-        cartRepository.findByUserId(userId)
-                .ifPresent(cart -> cartItemRepository.deleteByCart(cart));
+        cartStore.findCart(userId)
+                .ifPresent(cart -> clearCartItems(cart.getId()));
+    }
+
+    public void clearCartItems(Long cartId) {
+        cartStore.clear(cartId);
+        TransactionHooks.afterCommit(() -> stockHoldService.releaseCart(cartId));
+    }
+
+    // Persists changes a write-behind cart store has not written yet, so the tables can be read directly
+    public void flushCart(Long cartId) {
+        cartStore.flush(cartId);
+    }
+
+    // Cart lines with their products loaded in the same query
+    public List<CartItem> getCartItemsWithProducts(Long cartId) {
+        return cartItemRepository.findByCartIdWithProduct(cartId);
+    }
+
+    // Stock this cart may still take: what is left once other carts' holds are subtracted
+    public boolean isAvailableForCart(Long cartId, Product product, int quantity) {
+        int stock = productService.getAvailableStock(product);
+        return stock - stockHoldService.getHeldByOthers(product.getId(), cartId) >= quantity;
     }
 
+    public Map<String, Object> getHoldStats() {
+        return stockHoldService.getStats();
+    }
+
+    private void holdStock(Long cartId, Product product, int quantity) {
+        int stock = productService.getAvailableStock(product.getId()).orElse(0);
+        if (!stockHoldService.hold(cartId, product.getId(), quantity, stock)) {
+            throw new RuntimeException("Insufficient stock for product: " + product.getName());
+        }
+    }
+
+    // Reads the running subtotal kept with the cart
+    @Transactional(readOnly = true)
     public BigDecimal calculateCartTotal(Long cartId) {
-        List<CartItem> cartItems = cartItemRepository.findByCartId(cartId);
-        return cartItems.stream()
-                .map(item -> item.getPriceAtTime().multiply(BigDecimal.valueOf(item.getQuantity())))
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        return cartStore.getSubtotal(cartId);
     }
 
+    @Transactional(readOnly = true)
     public boolean isCartEmpty(Long cartId) {
-        return cartItemRepository.findByCartId(cartId).isEmpty();
+        return cartStore.getItemCount(cartId) == 0;
+    }
+
+    public Map<String, Object> getStoreStats() {
+        return cartStore.getStats();
+    }
+
+    // Safety net for running totals that drifted, e.g. from lines edited outside CartService. Carts are
+    // walked in id order a chunk at a time, each chunk in its own short transaction, so the repair never
+    // holds locks on the whole carts table.
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${cart.totals.repair-interval-ms:3600000}", initialDelayString = "${cart.totals.repair-interval-ms:3600000}")
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void repairCartTotals() {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        long afterId = 0;
+        int repaired = 0;
+        while (true) {
+            List<Long> cartIds = cartRepository.findIdsAfter(afterId, Limit.of(repairChunkSize));
+            if (cartIds.isEmpty()) {
+                break;
+            }
+            afterId = cartIds.get(cartIds.size() - 1);
+            repaired += transaction.execute(status -> cartRepository.repairTotals(cartIds));
+            if (cartIds.size() < repairChunkSize) {
+                break;
+            }
+        }
+        if (repaired > 0) {
+            log.warn("Repaired running totals of {} carts", repaired);
+        }
     }
 }
@@ -0,0 +1,57 @@
+package com.example.adaptnxt.service;
+
+import com.example.adaptnxt.models.Cart;
+import com.example.adaptnxt.models.CartItem;
+import com.example.adaptnxt.models.Product;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Where cart contents live between requests. CartService keeps the business
+ * rules (stock holds, validation) and delegates storage to the implementation
+ * selected with cart.store.type: "jpa" writes every change straight to the
+ * carts/cart_items tables, "memory" keeps carts in memory and writes them
+ * behind on an interval.
+ *
+ * Carts and lines handed out are snapshots; changes go back through the
+ * store. Callers run inside a CartService transaction.
+ */
+public interface CartStore {
+
+    Cart getOrCreateCart(Long userId);
+
+    // Same as getOrCreateCart, with the lines and their products loaded for building a response
+    Cart getOrCreateCartWithItems(Long userId);
+
+    Optional<Cart> findCart(Long userId);
+
+    List<CartItem> getItems(Long cartId);
+
+    Optional<CartItem> findItem(Long cartItemId);
+
+    Optional<CartItem> findItem(Long cartId, Long productId);
+
+    // Adds quantity to the product's line, creating the line at the product's current price
+    CartItem addItem(Cart cart, Product product, int quantity);
+
+    CartItem updateQuantity(CartItem item, int quantity);
+
+    void removeItem(CartItem item);
+
+    void clear(Long cartId);
+
+    BigDecimal getSubtotal(Long cartId);
+
+    int getItemCount(Long cartId);
+
+    // Makes the carts/cart_items tables reflect every change accepted so far for the cart
+    void flush(Long cartId);
+
+    // True while the store holds the cart in memory, so its rows must not be purged underneath it
+    boolean isInMemory(Long cartId);
+
+    Map<String, Object> getStats();
+}
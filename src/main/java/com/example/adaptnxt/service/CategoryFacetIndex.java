@@ -0,0 +1,223 @@
+package com.example.adaptnxt.service;
+
+import com.example.adaptnxt.models.Product;
+import com.example.adaptnxt.repository.ProductRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+/**
+ * Per-category product counts and in-stock price ranges, maintained
+ * incrementally from ProductService writes so storefront facets never need
+ * to scan the products table. Built from a streaming scan at startup and
+ * after bulk imports.
+ */
+@Component
+public class CategoryFacetIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(CategoryFacetIndex.class);
+
+    private Facets facets = new Facets();
+
+    // Ids of products changed while a rebuild is scanning, null when none is running
+    private Set<Long> changedDuringRebuild;
+
+    private final Object rebuildMonitor = new Object();
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildOnStartup() {
+        rebuild();
+    }
+
+    // Recomputes every facet from a streaming scan of the catalog into new facets that are swapped in at
+    // the end, so writes and facet reads are not blocked while it runs
+    public void rebuild() {
+        synchronized (rebuildMonitor) {
+            synchronized (this) {
+                changedDuringRebuild = new HashSet<>();
+            }
+            try {
+                Facets built = new Facets();
+                TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+                transaction.setReadOnly(true);
+                transaction.executeWithoutResult(status -> {
+                    try (Stream<Product> products = productRepository.streamAll()) {
+                        products.forEach(product -> {
+                            built.add(Contribution.of(product), product.getId());
+                            entityManager.detach(product);
+                        });
+                    }
+                });
+
+                // Writes made during the scan may be missing from it, so their products are re-read before the swap
+                Set<Long> changed;
+                while ((changed = swapOrDrain(built)) != null) {
+                    Set<Long> ids = changed;
+                    transaction.executeWithoutResult(status -> {
+                        ids.forEach(built::remove);
+                        productRepository.findAllById(ids)
+                                .forEach(product -> built.add(Contribution.of(product), product.getId()));
+                    });
+                }
+                log.info("Category facets built for {} categories", built.byCategory.size());
+            } finally {
+                synchronized (this) {
+                    changedDuringRebuild = null;
+                }
+            }
+        }
+    }
+
+    public synchronized void update(Product product) {
+        if (product == null || product.getId() == null) {
+            return;
+        }
+        facets.remove(product.getId());
+        facets.add(Contribution.of(product), product.getId());
+        changed(product.getId());
+    }
+
+    // Applies a stock change without re-reading the product
+    public synchronized void adjustStock(Long productId, int delta) {
+        changed(productId);
+        Contribution previous = facets.remove(productId);
+        if (previous == null) {
+            return;
+        }
+        facets.add(new Contribution(previous.category, previous.price, Math.max(0, previous.stock + delta)), productId);
+    }
+
+    public synchronized void remove(Long productId) {
+        facets.remove(productId);
+        changed(productId);
+    }
+
+    public synchronized List<Map<String, Object>> getCategoryFacets() {
+        List<Map<String, Object>> result = new ArrayList<>(facets.byCategory.size());
+        for (Map.Entry<String, Facet> entry : facets.byCategory.entrySet()) {
+            Facet facet = entry.getValue();
+            Map<String, Object> facetMap = new LinkedHashMap<>();
+            facetMap.put("category", entry.getKey());
+            facetMap.put("productCount", facet.productCount);
+            facetMap.put("inStockCount", facet.inStockCount);
+            facetMap.put("minPrice", facet.inStockPrices.isEmpty() ? null : facet.inStockPrices.firstKey());
+            facetMap.put("maxPrice", facet.inStockPrices.isEmpty() ? null : facet.inStockPrices.lastKey());
+            result.add(facetMap);
+        }
+        return result;
+    }
+
+    // Swaps the built facets in when no write is left to replay, otherwise hands back the ids to re-read
+    private synchronized Set<Long> swapOrDrain(Facets built) {
+        if (changedDuringRebuild.isEmpty()) {
+            facets = built;
+            return null;
+        }
+        Set<Long> changed = changedDuringRebuild;
+        changedDuringRebuild = new HashSet<>();
+        return changed;
+    }
+
+    private void changed(Long productId) {
+        if (changedDuringRebuild != null) {
+            changedDuringRebuild.add(productId);
+        }
+    }
+
+    private static final class Facets {
+        // Last contribution of each product, so updates can subtract it exactly
+        private final Map<Long, Contribution> contributions = new HashMap<>();
+
+        private final Map<String, Facet> byCategory = new TreeMap<>();
+
+        void add(Contribution contribution, Long productId) {
+            if (contribution.category == null) {
+                return;
+            }
+            contributions.put(productId, contribution);
+            Facet facet = byCategory.computeIfAbsent(contribution.category, k -> new Facet());
+            facet.productCount++;
+            if (contribution.inStock()) {
+                facet.inStockCount++;
+                facet.inStockPrices.merge(contribution.price, 1, Integer::sum);
+            }
+        }
+
+        // Takes the product's contribution back out and returns it, or null if it had none
+        Contribution remove(Long productId) {
+            Contribution contribution = contributions.remove(productId);
+            if (contribution == null) {
+                return null;
+            }
+            Facet facet = byCategory.get(contribution.category);
+            if (facet == null) {
+                return contribution;
+            }
+            facet.productCount--;
+            if (contribution.inStock()) {
+                facet.inStockCount--;
+                facet.inStockPrices.computeIfPresent(contribution.price, (price, count) -> count > 1 ? count - 1 : null);
+            }
+            if (facet.productCount <= 0) {
+                byCategory.remove(contribution.category);
+            }
+            return contribution;
+        }
+    }
+
+    private static final class Facet {
+        private int productCount;
+        private int inStockCount;
+        // Price -> number of in-stock products at that price, so min/max survive removals
+        private final TreeMap<BigDecimal, Integer> inStockPrices = new TreeMap<>();
+    }
+
+    private static final class Contribution {
+        private final String category;
+        private final BigDecimal price;
+        private final int stock;
+
+        private Contribution(String category, BigDecimal price, int stock) {
+            this.category = category;
+            this.price = price;
+            this.stock = stock;
+        }
+
+        static Contribution of(Product product) {
+            int stock = product.getStock() != null ? product.getStock() : 0;
+            return new Contribution(product.getCategory(), product.getPrice(), stock);
+        }
+
+        boolean inStock() {
+            return stock > 0 && price != null;
+        }
+    }
+}
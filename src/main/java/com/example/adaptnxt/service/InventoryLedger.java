@@ -0,0 +1,242 @@
+package com.example.adaptnxt.service;
+
+import com.example.adaptnxt.models.InventoryJournalEntry;
+import com.example.adaptnxt.repository.InventoryJournalRepository;
+import com.example.adaptnxt.repository.ProductRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-memory inventory ledger for flash sales. Available stock per product is
+ * held in an atomic counter seeded from products.stock, so checkouts are
+ * granted or denied with a compare-and-set instead of a locking UPDATE on a
+ * hot product row. Each grant also inserts inventory_journal rows in the
+ * order transaction; a scheduled flush folds those into products.stock in
+ * batches and deletes them, and any rows left behind by a crash are applied
+ * on startup.
+ *
+ * The counters are per JVM, so the ledger must only be enabled when a single
+ * instance takes checkouts.
+ */
+@Component
+public class InventoryLedger {
+
+    private static final Logger log = LoggerFactory.getLogger(InventoryLedger.class);
+
+    private final Map<Long, AtomicInteger> available = new ConcurrentHashMap<>();
+
+    private final Object flushLock = new Object();
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private InventoryJournalRepository inventoryJournalRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ProductCache productCache;
+
+    @Value("${inventory.ledger.enabled:false}")
+    private boolean enabled;
+
+    @Value("${inventory.ledger.flush-batch-size:1000}")
+    private int flushBatchSize;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // Stock that can still be granted, or empty if the product does not exist
+    public Optional<Integer> getAvailable(Long productId) {
+        AtomicInteger counter = counter(productId);
+        return counter == null ? Optional.empty() : Optional.of(counter.get());
+    }
+
+    /**
+     * Takes stock for every product or for none. Must run inside the order
+     * transaction: the journal rows commit with the order, and the counters
+     * are given back if that transaction rolls back.
+     */
+    public void reserve(Map<Long, Integer> quantitiesByProductId) {
+        // Ascending id order keeps partial grants easy to undo
+        Map<Long, Integer> quantities = new TreeMap<>(quantitiesByProductId);
+        Map<Long, Integer> granted = new TreeMap<>();
+        // The counters the units came from: a counter replaced by reset() in the meantime must not get them back
+        Map<Long, AtomicInteger> takenFrom = new TreeMap<>();
+        for (Map.Entry<Long, Integer> entry : quantities.entrySet()) {
+            Long productId = entry.getKey();
+            AtomicInteger counter = counter(productId);
+            if (counter == null) {
+                release(granted, takenFrom);
+                throw new RuntimeException("Product not found with id: " + productId);
+            }
+            if (!tryTake(counter, entry.getValue())) {
+                release(granted, takenFrom);
+                String name = productRepository.findById(productId).map(p -> p.getName()).orElse(String.valueOf(productId));
+                throw new RuntimeException("Insufficient stock for product: " + name);
+            }
+            granted.put(productId, entry.getValue());
+            takenFrom.put(productId, counter);
+        }
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) {
+                        release(granted, takenFrom);
+                    }
+                }
+            });
+        }
+
+        List<InventoryJournalEntry> entries = new ArrayList<>(granted.size());
+        granted.forEach((productId, quantity) -> entries.add(new InventoryJournalEntry(productId, quantity)));
+        try {
+            inventoryJournalRepository.saveAll(entries);
+        } catch (RuntimeException e) {
+            if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+                release(granted, takenFrom);
+            }
+            throw e;
+        }
+    }
+
+    // Drops the counter so the next access re-seeds it from the database
+    public void reset(Long productId) {
+        available.remove(productId);
+    }
+
+    // Same for every product, after stock was written behind the ledger's back (bulk import)
+    public void resetAll() {
+        available.clear();
+    }
+
+    @Scheduled(fixedDelayString = "${inventory.ledger.flush-interval-ms:1000}")
+    public void scheduledFlush() {
+        if (enabled) {
+            flush();
+        }
+    }
+
+    // Crash recovery: apply whatever the previous run journaled but never flushed
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void reconcileOnStartup() {
+        int applied = flush();
+        if (applied > 0) {
+            log.warn("Inventory ledger reconciled {} journal entries left over from the previous run", applied);
+        }
+    }
+
+    /**
+     * Applies pending journal entries to products.stock in batches. Each batch
+     * updates the products and deletes exactly the entries it read in one
+     * transaction, so an entry is applied once even across crashes.
+     */
+    public int flush() {
+        synchronized (flushLock) {
+            TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+            int total = 0;
+            while (true) {
+                List<Long> touched = new ArrayList<>();
+                Integer flushed = transaction.execute(status -> {
+                    List<InventoryJournalEntry> batch =
+                            inventoryJournalRepository.findAllByOrderByIdAsc(Limit.of(flushBatchSize));
+                    if (batch.isEmpty()) {
+                        return 0;
+                    }
+                    Map<Long, Integer> totals = new TreeMap<>();
+                    List<Long> entryIds = new ArrayList<>(batch.size());
+                    for (InventoryJournalEntry entry : batch) {
+                        totals.merge(entry.getProductId(), entry.getQuantity(), Integer::sum);
+                        entryIds.add(entry.getId());
+                    }
+                    List<Object[]> updates = new ArrayList<>(totals.size());
+                    totals.forEach((productId, quantity) -> updates.add(new Object[] {quantity, productId}));
+                    jdbcTemplate.batchUpdate(
+                            "UPDATE products SET stock = stock - ?, updated_at = CURRENT_TIMESTAMP, version = version + 1 WHERE id = ?",
+                            updates);
+                    inventoryJournalRepository.deleteAllByIdInBatch(entryIds);
+                    touched.addAll(totals.keySet());
+                    return batch.size();
+                });
+                touched.forEach(productCache::invalidate);
+                total += flushed;
+                if (flushed < flushBatchSize) {
+                    return total;
+                }
+            }
+        }
+    }
+
+    private AtomicInteger counter(Long productId) {
+        AtomicInteger counter = available.get(productId);
+        if (counter != null) {
+            return counter;
+        }
+        Integer seeded = seed(productId);
+        if (seeded == null) {
+            return null;
+        }
+        AtomicInteger existing = available.putIfAbsent(productId, new AtomicInteger(seeded));
+        return existing != null ? existing : available.get(productId);
+    }
+
+    // Database stock minus journaled-but-unflushed units, read in one fresh snapshot
+    private Integer seed(Long productId) {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        transaction.setReadOnly(true);
+        return transaction.execute(status -> productRepository.findById(productId)
+                .map(product -> product.getStock() - (int) inventoryJournalRepository.sumPendingQuantity(productId))
+                .orElse(null));
+    }
+
+    private static boolean tryTake(AtomicInteger counter, int quantity) {
+        while (true) {
+            int current = counter.get();
+            if (current < quantity) {
+                return false;
+            }
+            if (counter.compareAndSet(current, current - quantity)) {
+                return true;
+            }
+        }
+    }
+
+    // Gives units back to the counter they were taken from. Once reset() has replaced that counter the
+    // units are dropped with it: the new counter was seeded from the database, which never saw them.
+    private static void release(Map<Long, Integer> granted, Map<Long, AtomicInteger> takenFrom) {
+        granted.forEach((productId, quantity) -> takenFrom.get(productId).addAndGet(quantity));
+    }
+}
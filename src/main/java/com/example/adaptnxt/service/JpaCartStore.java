@@ -0,0 +1,145 @@
+package com.example.adaptnxt.service;
+
+import com.example.adaptnxt.models.Cart;
+import com.example.adaptnxt.models.CartItem;
+import com.example.adaptnxt.models.Product;
+import com.example.adaptnxt.repository.CartItemRepository;
+import com.example.adaptnxt.repository.CartRepository;
+import org.hibernate.Hibernate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Default cart store: every change is written to carts/cart_items in the
+ * caller's transaction.
+ */
+@Component
+@ConditionalOnProperty(name = "cart.store.type", havingValue = "jpa", matchIfMissing = true)
+public class JpaCartStore implements CartStore {
+
+    @Autowired
+    private CartRepository cartRepository;
+
+    @Autowired
+    private CartItemRepository cartItemRepository;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public Cart getOrCreateCart(Long userId) {
+        return cartRepository.findByUserId(userId)
+                .orElseGet(() -> {
+                    cartRepository.insertIfAbsent(userId);
+                    return cartRepository.findByUserId(userId).orElseThrow();
+                });
+    }
+
+    // One fetch-join query instead of one for the lines plus one per product
+    @Override
+    public Cart getOrCreateCartWithItems(Long userId) {
+        return cartRepository.findByUserIdWithItems(userId)
+                .orElseGet(() -> getOrCreateCart(userId));
+    }
+
+    @Override
+    public Optional<Cart> findCart(Long userId) {
+        return cartRepository.findByUserId(userId);
+    }
+
+    @Override
+    public List<CartItem> getItems(Long cartId) {
+        return cartItemRepository.findByCartId(cartId);
+    }
+
+    @Override
+    public Optional<CartItem> findItem(Long cartItemId) {
+        return cartItemRepository.findById(cartItemId);
+    }
+
+    @Override
+    public Optional<CartItem> findItem(Long cartId, Long productId) {
+        return cartItemRepository.findByCartIdAndProductId(cartId, productId);
+    }
+
+    // Upsert instead of read-then-insert, so concurrent adds of a product add up on one line
+    @Override
+    public CartItem addItem(Cart cart, Product product, int quantity) {
+        boolean inserted = cartItemRepository.upsertQuantity(cart.getId(), product.getId(), quantity, product.getPrice()) == 1;
+        CartItem cartItem = cartItemRepository.findByCartIdAndProductId(cart.getId(), product.getId()).orElseThrow();
+        if (!inserted) {
+            // A line already loaded in this transaction would still hold its old quantity
+            entityManager.refresh(cartItem);
+        }
+        adjustTotals(cart, cartItem.getPriceAtTime(), quantity, inserted ? 1 : 0);
+        return cartItem;
+    }
+
+    @Override
+    public CartItem updateQuantity(CartItem item, int quantity) {
+        adjustTotals(item.getCart(), item.getPriceAtTime(), quantity - item.getQuantity(), 0);
+        item.setQuantity(quantity);
+        return cartItemRepository.save(item);
+    }
+
+    @Override
+    public void removeItem(CartItem item) {
+        cartItemRepository.delete(item);
+        adjustTotals(item.getCart(), item.getPriceAtTime(), -item.getQuantity(), -1);
+    }
+
+    // Removes every line of the cart with one DELETE statement
+    @Override
+    public void clear(Long cartId) {
+        cartItemRepository.deleteAllByCartIdInBulk(cartId);
+        cartRepository.resetTotals(cartId);
+    }
+
+    @Override
+    public BigDecimal getSubtotal(Long cartId) {
+        return cartRepository.findSubtotalById(cartId).orElse(BigDecimal.ZERO);
+    }
+
+    @Override
+    public int getItemCount(Long cartId) {
+        return cartRepository.findItemCountById(cartId).orElse(0);
+    }
+
+    @Override
+    public void flush(Long cartId) {
+        // Nothing is pending: every change was written when it was made
+    }
+
+    @Override
+    public boolean isInMemory(Long cartId) {
+        return false;
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        return Map.of("type", "jpa");
+    }
+
+    // Keeps the cart's running subtotal and line count in step with a line change. The bulk UPDATE
+    // bypasses the persistence context, so a cart already loaded in this transaction is adjusted to match.
+    private void adjustTotals(Cart cart, BigDecimal price, int quantityDelta, int lineDelta) {
+        if (quantityDelta == 0 && lineDelta == 0) {
+            return;
+        }
+        BigDecimal amount = price.multiply(BigDecimal.valueOf(quantityDelta));
+        cartRepository.adjustTotals(cart.getId(), amount, lineDelta);
+        if (Hibernate.isInitialized(cart)) {
+            cart.setSubtotal(cart.getSubtotal().add(amount));
+            cart.setItemCount(cart.getItemCount() + lineDelta);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.adaptnxt.service;
+
+import org.springframework.data.domain.KeysetScrollPosition;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Opaque "after" tokens for keyset (seek) pagination. A token carries the sort
+ * it was issued for plus the key values of the last row returned, so the next
+ * page can be read with a WHERE (sortKey, id) &gt; (?, ?) seek instead of OFFSET.
+ */
+public final class KeysetCursor {
+
+    private KeysetCursor() {
+    }
+
+    // Sort by the given key with id as tie-breaker so every row has a unique position
+    public static Sort sort(String property, String sortDir) {
+        Sort.Direction direction = sortDir.equalsIgnoreCase("desc") ? Sort.Direction.DESC : Sort.Direction.ASC;
+        Sort sort = Sort.by(direction, property);
+        return property.equals("id") ? sort : sort.and(Sort.by(direction, "id"));
+    }
+
+    public static String encode(Sort sort, ScrollPosition position) {
+        if (!(position instanceof KeysetScrollPosition keyset) || keyset.isInitial()) {
+            return null;
+        }
+        StringBuilder token = new StringBuilder(describe(sort)).append('|');
+        boolean first = true;
+        for (Map.Entry<String, Object> key : keyset.getKeys().entrySet()) {
+            if (!first) {
+                token.append('&');
+            }
+            first = false;
+            token.append(key.getKey()).append('=')
+                    .append(URLEncoder.encode(String.valueOf(key.getValue()), StandardCharsets.UTF_8));
+        }
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(token.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decodes a token issued for the same sort. A null or blank token starts
+     * from the beginning. Key values are converted back with the given parsers,
+     * which also act as the whitelist of properties a token may reference. The
+     * token must carry exactly one value per sort property, so a tampered token
+     * is rejected here instead of failing while the seek predicate is built.
+     */
+    public static KeysetScrollPosition decode(String token, Sort sort, Map<String, Function<String, Object>> parsers) {
+        if (token == null || token.isBlank()) {
+            return ScrollPosition.keyset();
+        }
+
+        String decoded;
+        try {
+            decoded = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+
+        int separator = decoded.indexOf('|');
+        if (separator < 0 || !decoded.substring(0, separator).equals(describe(sort))) {
+            throw new IllegalArgumentException("Cursor does not match the requested sort order");
+        }
+
+        Set<String> expected = new HashSet<>();
+        sort.forEach(order -> expected.add(order.getProperty()));
+        Map<String, Object> keys = new LinkedHashMap<>();
+        for (String pair : decoded.substring(separator + 1).split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq < 0) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            String property = pair.substring(0, eq);
+            Function<String, Object> parser = parsers.get(property);
+            if (parser == null || !expected.contains(property) || keys.containsKey(property)) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            try {
+                keys.put(property, parser.apply(URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8)));
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+        }
+        if (!keys.keySet().equals(expected)) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+        return ScrollPosition.forward(keys);
+    }
+
+    private static String describe(Sort sort) {
+        StringBuilder description = new StringBuilder();
+        for (Sort.Order order : sort) {
+            if (description.length() > 0) {
+                description.append(',');
+            }
+            description.append(order.getProperty()).append(':').append(order.getDirection().name());
+        }
+        return description.toString();
+    }
+}
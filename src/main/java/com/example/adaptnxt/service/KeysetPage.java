@@ -0,0 +1,60 @@
+package com.example.adaptnxt.service;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.data.domain.KeysetScrollPosition;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * One page of a keyset-paginated listing. nextCursor is passed back as the
+ * "after" parameter to read the following page; totalElements is only
+ * populated when the caller asked for a count.
+ */
+@Getter
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class KeysetPage<T> {
+
+    public static final int MAX_SIZE = 100;
+
+    private final List<T> content;
+
+    private final int size;
+
+    private final boolean hasNext;
+
+    private final String nextCursor;
+
+    private final Long totalElements;
+
+    /**
+     * Reads the page after the given cursor. The size is clamped to 1..MAX_SIZE,
+     * the cursor is decoded against the sort with the given parsers (see
+     * KeysetCursor.decode), and the next cursor points at the last row read.
+     * count is only called when non-null.
+     */
+    public static <T> KeysetPage<T> scroll(String after, int size, Sort sort,
+                                           Map<String, Function<String, Object>> parsers,
+                                           BiFunction<KeysetScrollPosition, Limit, Window<T>> query,
+                                           LongSupplier count) {
+        int pageSize = Math.max(1, Math.min(size, MAX_SIZE));
+        KeysetScrollPosition position = KeysetCursor.decode(after, sort, parsers);
+        Window<T> window = query.apply(position, Limit.of(pageSize));
+
+        String nextCursor = null;
+        if (window.hasNext() && !window.isEmpty()) {
+            nextCursor = KeysetCursor.encode(sort, window.positionAt(window.size() - 1));
+        }
+        Long total = count != null ? count.getAsLong() : null;
+        return new KeysetPage<>(window.getContent(), window.size(), window.hasNext(), nextCursor, total);
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.adaptnxt.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Runs a read-modify-write against @Version entities in its own transaction
+ * and retries it when the commit loses an optimistic-lock race. Retries use
+ * bounded exponential backoff with full jitter so contending writers spread
+ * out instead of colliding again.
+ *
+ * Each attempt must re-read the entity, so callers pass the whole unit of
+ * work and must not already be inside a transaction; if one is active the
+ * action runs once and a conflict propagates to the outer transaction.
+ */
+@Component
+public class OptimisticRetryExecutor {
+
+    private static final Logger log = LoggerFactory.getLogger(OptimisticRetryExecutor.class);
+
+    private final AtomicLong executions = new AtomicLong();
+    private final AtomicLong attempts = new AtomicLong();
+    private final AtomicLong conflicts = new AtomicLong();
+    private final AtomicLong exhausted = new AtomicLong();
+    private final Map<String, AtomicLong> conflictsByOperation = new ConcurrentHashMap<>();
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${optimistic-retry.max-attempts:5}")
+    private int maxAttempts;
+
+    @Value("${optimistic-retry.base-delay-ms:10}")
+    private long baseDelayMillis;
+
+    @Value("${optimistic-retry.max-delay-ms:200}")
+    private long maxDelayMillis;
+
+    public <T> T execute(String operation, Supplier<T> action) {
+        executions.incrementAndGet();
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            attempts.incrementAndGet();
+            return action.get();
+        }
+
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        for (int attempt = 1; ; attempt++) {
+            attempts.incrementAndGet();
+            try {
+                return transaction.execute(status -> action.get());
+            } catch (OptimisticLockingFailureException e) {
+                conflicts.incrementAndGet();
+                conflictsByOperation.computeIfAbsent(operation, k -> new AtomicLong()).incrementAndGet();
+                if (attempt >= maxAttempts) {
+                    exhausted.incrementAndGet();
+                    log.warn("{} still conflicting after {} attempts, giving up", operation, attempt);
+                    throw e;
+                }
+                log.debug("{} hit an optimistic lock conflict (attempt {}), retrying", operation, attempt);
+                backoff(attempt);
+            }
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        long attemptCount = attempts.get();
+        long conflictCount = conflicts.get();
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("executions", executions.get());
+        stats.put("attempts", attemptCount);
+        stats.put("conflicts", conflictCount);
+        stats.put("conflictRate", attemptCount == 0 ? 0.0 : (double) conflictCount / attemptCount);
+        stats.put("exhausted", exhausted.get());
+        Map<String, Long> byOperation = new LinkedHashMap<>();
+        conflictsByOperation.forEach((operation, count) -> byOperation.put(operation, count.get()));
+        stats.put("conflictsByOperation", byOperation);
+        return stats;
+    }
+
+    // Full jitter: sleep a random time up to base * 2^(attempt-1), capped at the max delay
+    private void backoff(int attempt) {
+        long ceiling = Math.min(maxDelayMillis, baseDelayMillis << Math.min(attempt - 1, 20));
+        long delay = ThreadLocalRandom.current().nextLong(ceiling + 1);
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while backing off after an optimistic lock conflict", e);
+        }
+    }
+}
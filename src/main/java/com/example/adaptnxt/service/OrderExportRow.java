@@ -0,0 +1,44 @@
+package com.example.adaptnxt.service;
+
+import com.example.adaptnxt.models.Order;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * One order line of the finance export, read as a flat projection so the
+ * export never materializes entities. Orders without lines appear once with
+ * the item columns null.
+ */
+@Getter
+@AllArgsConstructor
+public class OrderExportRow {
+
+    private final Long orderId;
+
+    private final LocalDateTime orderDate;
+
+    private final Order.OrderStatus orderStatus;
+
+    private final BigDecimal totalAmount;
+
+    private final String shippingAddress;
+
+    private final Long userId;
+
+    private final String username;
+
+    private final String email;
+
+    private final Long itemId;
+
+    private final Long productId;
+
+    private final String productName;
+
+    private final Integer quantity;
+
+    private final BigDecimal priceAtTime;
+}
@@ -0,0 +1,155 @@
+package com.example.adaptnxt.service;
+
+import com.example.adaptnxt.models.Order;
+import com.example.adaptnxt.repository.OrderRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Finance export of orders in a date range, optionally for one status. Order
+ * lines come from a single joined query read through a forward-only cursor
+ * and are written to the response as they arrive, so memory stays constant
+ * however many orders the range holds. CSV has one row per order line;
+ * NDJSON has one object per order with its lines nested.
+ */
+@Service
+public class OrderExportService {
+
+    private static final Logger log = LoggerFactory.getLogger(OrderExportService.class);
+
+    private static final String[] CSV_HEADER = {
+            "order_id", "order_date", "status", "user_id", "username", "email", "shipping_address", "order_total",
+            "item_id", "product_id", "product_name", "quantity", "unit_price"};
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    public enum Format {
+        CSV, NDJSON
+    }
+
+    // Writes every order placed in [from, to), oldest first; status may be null for all statuses
+    @Transactional(readOnly = true)
+    public long export(OutputStream out, Format format, LocalDateTime from, LocalDateTime to, Order.OrderStatus status)
+            throws IOException {
+        long started = System.currentTimeMillis();
+        BufferedOutputStream buffered = new BufferedOutputStream(out, 64 * 1024);
+        long orders;
+        try (Stream<OrderExportRow> rows = status == null
+                ? orderRepository.streamForExport(from, to)
+                : orderRepository.streamForExportByStatus(from, to, status)) {
+            orders = format == Format.CSV ? writeCsv(rows.iterator(), buffered) : writeNdjson(rows.iterator(), buffered);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        buffered.flush();
+        log.info("Exported {} orders as {} in {} ms", orders, format, System.currentTimeMillis() - started);
+        return orders;
+    }
+
+    private long writeCsv(Iterator<OrderExportRow> rows, OutputStream out) throws IOException {
+        writeCsvLine(out, (Object[]) CSV_HEADER);
+        long orders = 0;
+        Long currentOrderId = null;
+        while (rows.hasNext()) {
+            OrderExportRow row = rows.next();
+            if (!row.getOrderId().equals(currentOrderId)) {
+                currentOrderId = row.getOrderId();
+                orders++;
+            }
+            writeCsvLine(out, row.getOrderId(), row.getOrderDate(), row.getOrderStatus(), row.getUserId(),
+                    row.getUsername(), row.getEmail(), row.getShippingAddress(), row.getTotalAmount(),
+                    row.getItemId(), row.getProductId(), row.getProductName(), row.getQuantity(), row.getPriceAtTime());
+        }
+        return orders;
+    }
+
+    // Rows arrive grouped by order, so only the order being assembled is held in memory
+    private long writeNdjson(Iterator<OrderExportRow> rows, OutputStream out) throws IOException {
+        long orders = 0;
+        Map<String, Object> order = null;
+        List<Map<String, Object>> items = null;
+        Long currentOrderId = null;
+        while (rows.hasNext()) {
+            OrderExportRow row = rows.next();
+            if (!row.getOrderId().equals(currentOrderId)) {
+                if (order != null) {
+                    writeJsonLine(out, order);
+                }
+                currentOrderId = row.getOrderId();
+                orders++;
+                items = new ArrayList<>();
+                order = new LinkedHashMap<>();
+                order.put("id", row.getOrderId());
+                order.put("orderDate", row.getOrderDate());
+                order.put("status", row.getOrderStatus());
+                order.put("userId", row.getUserId());
+                order.put("username", row.getUsername());
+                order.put("email", row.getEmail());
+                order.put("shippingAddress", row.getShippingAddress());
+                order.put("totalAmount", row.getTotalAmount());
+                order.put("orderItems", items);
+            }
+            if (row.getItemId() != null) {
+                Map<String, Object> item = new LinkedHashMap<>();
+                item.put("id", row.getItemId());
+                item.put("productId", row.getProductId());
+                item.put("productName", row.getProductName());
+                item.put("quantity", row.getQuantity());
+                item.put("price", row.getPriceAtTime());
+                items.add(item);
+            }
+        }
+        if (order != null) {
+            writeJsonLine(out, order);
+        }
+        return orders;
+    }
+
+    private void writeJsonLine(OutputStream out, Map<String, Object> value) throws IOException {
+        out.write(objectMapper.writeValueAsBytes(value));
+        out.write('\n');
+    }
+
+    // RFC 4180: fields holding a comma, quote or line break are quoted, with quotes doubled
+    private static void writeCsvLine(OutputStream out, Object... fields) throws IOException {
+        StringBuilder line = new StringBuilder();
+        for (int i = 0; i < fields.length; i++) {
+            if (i > 0) {
+                line.append(',');
+            }
+            String field = fields[i] == null ? "" : fields[i].toString();
+            if (fields[i] instanceof String && !field.isEmpty() && "=+-@\t\r".indexOf(field.charAt(0)) >= 0) {
+                // Free text that a spreadsheet would run as a formula is kept as text
+                field = "'" + field;
+            }
+            if (field.indexOf(',') >= 0 || field.indexOf('"') >= 0 || field.indexOf('\n') >= 0 || field.indexOf('\r') >= 0) {
+                line.append('"').append(field.replace("\"", "\"\"")).append('"');
+            } else {
+                line.append(field);
+            }
+        }
+        line.append("\r\n");
+        out.write(line.toString().getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,149 @@
+package com.example.adaptnxt.service;
+
+import com.example.adaptnxt.models.Order;
+import com.example.adaptnxt.models.OrderHistoryEntry;
+import com.example.adaptnxt.models.OrderItem;
+import com.example.adaptnxt.repository.OrderHistoryRepository;
+import com.example.adaptnxt.repository.OrderRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Write side of the order_history read model. OrderService calls it from
+ * inside the transaction that creates, updates, cancels or deletes an order,
+ * so the history row commits or rolls back together with the order.
+ *
+ * Order lines are snapshotted when the order is projected: the product name
+ * and description shown in history are the ones at checkout time, like the
+ * price. Orders written before the read model existed are projected by a
+ * chunked backfill at startup.
+ */
+@Component
+public class OrderHistoryProjector {
+
+    private static final Logger log = LoggerFactory.getLogger(OrderHistoryProjector.class);
+
+    @Autowired
+    private OrderHistoryRepository orderHistoryRepository;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${order.history.backfill-chunk-size:500}")
+    private int backfillChunkSize;
+
+    // Writes the whole row: the order's header and a JSON snapshot of its lines
+    public void project(Order order, List<OrderItem> items) {
+        orderHistoryRepository.save(snapshot(order, items));
+    }
+
+    private OrderHistoryEntry snapshot(Order order, List<OrderItem> items) {
+        List<Map<String, Object>> lines = new ArrayList<>(items.size());
+        for (OrderItem item : items) {
+            Map<String, Object> line = new LinkedHashMap<>();
+            line.put("id", item.getId());
+            line.put("quantity", item.getQuantity());
+            line.put("price", item.getPriceAtTime());
+            if (item.getProduct() != null) {
+                Map<String, Object> product = new LinkedHashMap<>();
+                product.put("id", item.getProduct().getId());
+                product.put("name", item.getProduct().getName());
+                product.put("description", item.getProduct().getDescription());
+                line.put("product", product);
+            }
+            lines.add(line);
+        }
+
+        String itemsJson;
+        try {
+            itemsJson = objectMapper.writeValueAsString(lines);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize items of order " + order.getId(), e);
+        }
+        return new OrderHistoryEntry(order.getId(), order.getUser().getId(), order.getOrderDate(),
+                order.getOrderStatus(), order.getTotalAmount(), order.getShippingAddress(), items.size(), itemsJson);
+    }
+
+    // Backfill write: an order projected by a checkout or another instance meanwhile is left as it is
+    private void projectIfAbsent(Order order) {
+        OrderHistoryEntry entry = snapshot(order, order.getOrderItems());
+        orderHistoryRepository.insertIfAbsent(entry.getOrderId(), entry.getUserId(), entry.getOrderDate(),
+                entry.getOrderStatus().name(), entry.getTotalAmount(), entry.getShippingAddress(),
+                entry.getItemCount(), entry.getItemsJson());
+    }
+
+    // Status, total or address changed; the lines stay as projected
+    public void projectHeader(Order order) {
+        int updated = orderHistoryRepository.updateHeader(order.getId(), order.getOrderStatus(),
+                order.getTotalAmount(), order.getShippingAddress());
+        if (updated == 0) {
+            // Not backfilled yet: project it in full now
+            project(order, order.getOrderItems() != null ? order.getOrderItems() : List.of());
+        }
+    }
+
+    // Bulk status change: one statement for the whole set
+    public void projectStatus(Collection<Long> orderIds, Order.OrderStatus status) {
+        if (!orderIds.isEmpty()) {
+            orderHistoryRepository.updateStatus(orderIds, status);
+        }
+    }
+
+    public void remove(Long orderId) {
+        if (orderHistoryRepository.existsById(orderId)) {
+            orderHistoryRepository.deleteById(orderId);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfill() {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        long afterId = 0;
+        int projected = 0;
+        int skipped = 0;
+        while (true) {
+            List<Long> orderIds = orderHistoryRepository.findUnprojectedOrderIds(afterId, Limit.of(backfillChunkSize));
+            if (orderIds.isEmpty()) {
+                break;
+            }
+            afterId = orderIds.get(orderIds.size() - 1);
+            try {
+                transaction.executeWithoutResult(status -> orderRepository.findByIdInWithItems(orderIds)
+                        .forEach(this::projectIfAbsent));
+                projected += orderIds.size();
+            } catch (RuntimeException e) {
+                // Skip the chunk and carry on; its orders are picked up on the next start
+                skipped += orderIds.size();
+                log.warn("Order history backfill skipped orders {} to {}: {}", orderIds.get(0), afterId, e.getMessage());
+            }
+            if (orderIds.size() < backfillChunkSize) {
+                break;
+            }
+        }
+        if (projected > 0 || skipped > 0) {
+            log.info("Backfilled order history for {} orders, skipped {}", projected, skipped);
+        }
+    }
+}
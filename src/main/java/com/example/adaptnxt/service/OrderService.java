@@ -3,38 +3,85 @@ package com.example.adaptnxt.service;
 import com.example.adaptnxt.models.Cart;
 import com.example.adaptnxt.models.CartItem;
 import com.example.adaptnxt.models.Order;
+import com.example.adaptnxt.models.OrderHistoryEntry;
 import com.example.adaptnxt.models.OrderItem;
+import com.example.adaptnxt.models.Product;
 import com.example.adaptnxt.models.User;
+import com.example.adaptnxt.repository.OrderHistoryRepository;
 import com.example.adaptnxt.repository.OrderRepository;
 import com.example.adaptnxt.repository.OrderItemRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 @Transactional
 public class OrderService {
 
+    // Order listings are keyset-sorted by order date with id as tie-breaker; how to read each key back from a cursor
+    private static final Map<String, Function<String, Object>> KEYSET_PROPERTIES = Map.of(
+            "orderDate", LocalDateTime::parse,
+            "id", Long::valueOf);
+
     @Autowired
     private OrderRepository orderRepository;
 
     @Autowired
     private OrderItemRepository orderItemRepository;
 
+    @Autowired
+    private OrderHistoryRepository orderHistoryRepository;
+
     @Autowired
     private CartService cartService;
 
     @Autowired
     private ProductService productService;
 
+    @Autowired
+    private OptimisticRetryExecutor optimisticRetryExecutor;
+
+    @Autowired
+    private OrderHistoryProjector orderHistoryProjector;
+
+    @Autowired
+    private SalesRollupService salesRollupService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${order.bulk-status.chunk-size:500}")
+    private int bulkStatusChunkSize;
+
+    @Value("${order.bulk-status.max-ids:10000}")
+    private int bulkStatusMaxIds;
+
+    // Loads each order with its user, items and products in one query
     public List<Order> getAllOrders() {
-        return orderRepository.findAll();
+        return orderRepository.findAllWithDetails();
     }
 
     public Page<Order> getAllOrdersPaged(Pageable pageable) {
@@ -42,17 +89,47 @@ public class OrderService {
     }
 
     public Optional<Order> getOrderById(Long id) {
-        return orderRepository.findById(id);
+        return orderRepository.findByIdWithDetails(id);
     }
 
     public List<Order> getOrdersByUserId(Long userId) {
-        return orderRepository.findByUserIdOrderByOrderDateDesc(userId);
+        return orderRepository.findByUserIdWithItemsOrderByOrderDateDesc(userId);
+    }
+
+    // Order-history page: one range read of the order_history read model
+    @Transactional(readOnly = true)
+    public List<OrderHistoryEntry> getOrderHistory(Long userId) {
+        return orderHistoryRepository.findByUserIdOrderByOrderDateDescOrderIdDesc(userId);
     }
 
     public Page<Order> getOrdersByUserIdPaged(Long userId, Pageable pageable) {
         return orderRepository.findByUserId(userId, pageable);
     }
 
+    // A customer's orders through a seek on (user_id, order_date, id), newest first by default
+    @Transactional(readOnly = true)
+    public KeysetPage<Order> scrollOrdersByUserId(Long userId, String after, int size, String sortDir,
+                                                  boolean includeTotal) {
+        Sort sort = keysetSort(sortDir);
+        return KeysetPage.scroll(after, size, sort, KEYSET_PROPERTIES,
+                (position, limit) -> orderRepository.findByUserId(userId, position, sort, limit),
+                includeTotal ? () -> orderRepository.countByUserId(userId) : null);
+    }
+
+    // One status queue through a seek on (order_status, order_date, id), oldest first by default
+    @Transactional(readOnly = true)
+    public KeysetPage<Order> scrollOrdersByStatus(Order.OrderStatus status, String after, int size, String sortDir,
+                                                  boolean includeTotal) {
+        Sort sort = keysetSort(sortDir);
+        return KeysetPage.scroll(after, size, sort, KEYSET_PROPERTIES,
+                (position, limit) -> orderRepository.findByOrderStatus(status, position, sort, limit),
+                includeTotal ? () -> orderRepository.countByOrderStatus(status) : null);
+    }
+
+    private Sort keysetSort(String sortDir) {
+        return KeysetCursor.sort("orderDate", sortDir);
+    }
+
     public List<Order> getOrdersByStatus(Order.OrderStatus status) {
         return orderRepository.findByOrderStatus(status);
     }
@@ -61,102 +138,317 @@ public class OrderService {
         return orderRepository.findByOrderStatus(status, pageable);
     }
 
+    // Set-based checkout: a fixed number of statements no matter how many lines the cart has
     public Order createOrderFromCart(Long userId, String shippingAddress) {
-        // Get user's cart
+        return fillFromCart(newOrder(userId, shippingAddress), userId);
+    }
+
+    // Async checkout, first step: a PENDING order with nothing in it yet, so the caller has an id to poll
+    public Order acceptOrder(Long userId, String shippingAddress) {
         Cart cart = cartService.getCartByUserId(userId)
                 .orElseThrow(() -> new RuntimeException("Cart not found for user: " + userId));
-
-        // Get cart items
-        List<CartItem> cartItems = cartService.getCartItems(cart.getId());
-        
-        if (cartItems.isEmpty()) {
+        if (cartService.isCartEmpty(cart.getId())) {
             throw new RuntimeException("Cannot create order from empty cart");
         }
+        Order order = newOrder(userId, shippingAddress);
+        order.setTotalAmount(BigDecimal.ZERO);
+        // Flushed so the insert assigns orderDate (pooled ids defer it) before it is projected
+        Order savedOrder = orderRepository.saveAndFlush(order);
+        orderHistoryProjector.project(savedOrder, List.of());
+        return savedOrder;
+    }
 
-        // Validate stock availability for all items
-        for (CartItem item : cartItems) {
-            if (!productService.isProductAvailable(item.getProduct().getId(), item.getQuantity())) {
-                throw new RuntimeException("Insufficient stock for product: " + item.getProduct().getName());
-            }
+    // Async checkout, second step: fills an accepted order from the cart; a no-op once it has items
+    public Order completeAcceptedOrder(Long orderId) {
+        Order order = orderRepository.findById(orderId)
+                .orElseThrow(() -> new RuntimeException("Order not found with id: " + orderId));
+        if (order.getOrderStatus() != Order.OrderStatus.PENDING || orderItemRepository.existsByOrderId(orderId)) {
+            return order;
         }
+        return fillFromCart(order, order.getUser().getId());
+    }
 
-        // Calculate total amount
-        BigDecimal totalAmount = cartService.calculateCartTotal(cart.getId());
+    // Cancels an accepted order whose checkout failed, unless another attempt filled it meanwhile
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public boolean cancelAcceptedOrder(Long orderId) {
+        return optimisticRetryExecutor.execute("cancelAcceptedOrder", () ->
+                orderRepository.findById(orderId)
+                        .filter(order -> order.getOrderStatus() == Order.OrderStatus.PENDING)
+                        .filter(order -> !orderItemRepository.existsByOrderId(orderId))
+                        .map(order -> {
+                            order.setOrderStatus(Order.OrderStatus.CANCELLED);
+                            projectHeader(orderRepository.save(order));
+                            return true;
+                        })
+                        .orElse(false));
+    }
+
+    // Accepted orders whose items were never written, e.g. because the process stopped first
+    @Transactional(readOnly = true)
+    public List<Long> getAcceptedOrderIds() {
+        return orderRepository.findIdsByOrderStatusWithoutItems(Order.OrderStatus.PENDING);
+    }
 
-        // Create order
+    private Order newOrder(Long userId, String shippingAddress) {
         Order order = new Order();
         User user = new User();
         user.setId(userId);
         order.setUser(user);
-        order.setTotalAmount(totalAmount);
         order.setOrderStatus(Order.OrderStatus.PENDING);
         order.setShippingAddress(shippingAddress);
+        return order;
+    }
+
+    private Order fillFromCart(Order order, Long userId) {
+        // Get user's cart
+        Cart cart = cartService.getCartByUserId(userId)
+                .orElseThrow(() -> new RuntimeException("Cart not found for user: " + userId));
+
+        // Get cart items and their products in one query, after any write-behind changes are persisted
+        cartService.flushCart(cart.getId());
+        List<CartItem> cartItems = cartService.getCartItemsWithProducts(cart.getId());
+        
+        if (cartItems.isEmpty()) {
+            throw new RuntimeException("Cannot create order from empty cart");
+        }
+
+        // Validate stock from the loaded products and total the cart in memory
+        BigDecimal totalAmount = BigDecimal.ZERO;
+        Map<Long, Integer> quantities = new LinkedHashMap<>();
+        for (CartItem item : cartItems) {
+            Product product = item.getProduct();
+            if (!cartService.isAvailableForCart(cart.getId(), product, item.getQuantity())) {
+                throw new RuntimeException("Insufficient stock for product: " + product.getName());
+            }
+            totalAmount = totalAmount.add(item.getPriceAtTime().multiply(BigDecimal.valueOf(item.getQuantity())));
+            quantities.merge(product.getId(), item.getQuantity(), Integer::sum);
+        }
 
         // Save order
+        order.setTotalAmount(totalAmount);
         Order savedOrder = orderRepository.save(order);
 
-        // Create and save order items
+        // Create and save order items together
+        List<OrderItem> orderItems = new ArrayList<>(cartItems.size());
         for (CartItem item : cartItems) {
             OrderItem orderItem = new OrderItem();
             orderItem.setOrder(savedOrder);
             orderItem.setProduct(item.getProduct());
             orderItem.setQuantity(item.getQuantity());
             orderItem.setPriceAtTime(item.getProduct().getPrice());
-            orderItemRepository.save(orderItem);
+            orderItem.setCategory(item.getProduct().getCategory());
+            orderItems.add(orderItem);
         }
+        orderItemRepository.saveAll(orderItems);
+        savedOrder.setOrderItems(orderItems);
 
-        // Reduce stock for all products
-        for (CartItem item : cartItems) {
-            productService.reduceStock(item.getProduct().getId(), item.getQuantity());
-        }
+        // Send the order and its items as one batch now: the insert assigns orderDate, which the projections need
+        orderRepository.flush();
+        orderHistoryProjector.project(savedOrder, orderItems);
+
+        // Reduce stock for all products in one guarded statement
+        productService.reduceStockForOrder(quantities);
+
+        // Clear cart after successful order with one bulk delete
+        cartService.clearCartItems(cart.getId());
 
-        // Clear cart after successful order
-        cartService.clearCart(userId);
+        // Last, so the shared rollup rows (TOTAL above all) stay locked only until the commit
+        salesRollupService.recordOrder(savedOrder, orderItems);
 
         return savedOrder;
     }
 
-    public Order updateOrderStatus(Long orderId, Order.OrderStatus status) {
-        return orderRepository.findById(orderId)
-                .map(order -> {
-                    order.setOrderStatus(status);
-                    return orderRepository.save(order);
-                })
+    // Absolute writes: applied once, against expectedVersion when the client sent one, and never retried
+    // on top of a concurrent change; a conflict surfaces as an OptimisticLockingFailureException
+    public Order updateOrderStatus(Long orderId, Order.OrderStatus status, Long expectedVersion) {
+        Order order = findForUpdate(orderId, expectedVersion);
+        checkTransition(order, status);
+        Order.OrderStatus previous = order.getOrderStatus();
+        order.setOrderStatus(status);
+        Order saved = projectHeader(orderRepository.saveAndFlush(order));
+        rollUpStatusChange(orderId, previous, status);
+        return saved;
+    }
+
+    public Order updateOrder(Long id, Order orderDetails, Long expectedVersion) {
+        Order order = findForUpdate(id, expectedVersion);
+        checkTransition(order, orderDetails.getOrderStatus());
+        Order.OrderStatus previous = order.getOrderStatus();
+        order.setTotalAmount(orderDetails.getTotalAmount());
+        order.setOrderStatus(orderDetails.getOrderStatus());
+        order.setShippingAddress(orderDetails.getShippingAddress());
+        Order saved = projectHeader(orderRepository.saveAndFlush(order));
+        rollUpStatusChange(id, previous, orderDetails.getOrderStatus());
+        return saved;
+    }
+
+    private Order findForUpdate(Long orderId, Long expectedVersion) {
+        Order order = orderRepository.findById(orderId)
                 .orElseThrow(() -> new RuntimeException("Order not found with id: " + orderId));
+        if (expectedVersion != null && !expectedVersion.equals(order.getVersion())) {
+            throw new OptimisticLockingFailureException("Order " + orderId + " is at version "
+                    + order.getVersion() + ", not " + expectedVersion);
+        }
+        return order;
+    }
+
+    // Keeping the current status is always allowed, so other fields can change on their own
+    private void checkTransition(Order order, Order.OrderStatus next) {
+        if (next == null) {
+            throw new IllegalArgumentException("Order status is required");
+        }
+        if (next != order.getOrderStatus() && !order.getOrderStatus().canTransitionTo(next)) {
+            throw new IllegalStateException("Cannot move order " + order.getId() + " from "
+                    + order.getOrderStatus() + " to " + next);
+        }
+    }
+
+    /**
+     * Moves many orders to one status with set-based UPDATEs, a chunk at a
+     * time, each chunk in its own short transaction. Transitions the status
+     * lifecycle does not allow are reported, not applied, and every requested
+     * id gets an outcome, in request order.
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public Map<String, Object> bulkUpdateStatus(BulkStatusChange change) {
+        Order.OrderStatus target = change.getStatus();
+        if (target == null) {
+            throw new RuntimeException("Target status is required");
+        }
+        List<Long> orderIds = change.getOrderIds() == null ? List.of() :
+                change.getOrderIds().stream().filter(Objects::nonNull).distinct().collect(Collectors.toList());
+        if (orderIds.isEmpty()) {
+            throw new RuntimeException("No order ids given");
+        }
+        if (orderIds.size() > bulkStatusMaxIds) {
+            throw new RuntimeException("At most " + bulkStatusMaxIds + " orders can be changed at once");
+        }
+
+        Map<Long, Map<String, Object>> results = new HashMap<>();
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        for (int start = 0; start < orderIds.size(); start += bulkStatusChunkSize) {
+            List<Long> chunk = orderIds.subList(start, Math.min(start + bulkStatusChunkSize, orderIds.size()));
+            transaction.executeWithoutResult(status -> transitionChunk(chunk, target, change.getFromStatus(), results));
+        }
+
+        List<Map<String, Object>> outcomes = orderIds.stream().map(results::get).collect(Collectors.toList());
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("status", target);
+        response.put("requested", orderIds.size());
+        response.put("updated", outcomes.stream()
+                .filter(outcome -> outcome.get("outcome") == BulkStatusChange.Outcome.UPDATED).count());
+        response.put("results", outcomes);
+        return response;
     }
 
-    public Order updateOrder(Long id, Order orderDetails) {
-        return orderRepository.findById(id)
-                .map(order -> {
-                    order.setTotalAmount(orderDetails.getTotalAmount());
-                    order.setOrderStatus(orderDetails.getOrderStatus());
-                    order.setShippingAddress(orderDetails.getShippingAddress());
-                    return orderRepository.save(order);
-                })
-                .orElseThrow(() -> new RuntimeException("Order not found with id: " + id));
+    private void transitionChunk(List<Long> orderIds, Order.OrderStatus target, Order.OrderStatus expected,
+                                 Map<Long, Map<String, Object>> results) {
+        Map<Long, Order.OrderStatus> current = new HashMap<>();
+        Set<Long> withoutItems = new HashSet<>();
+        for (Object[] row : orderRepository.findStatusesByIdIn(orderIds)) {
+            current.put((Long) row[0], (Order.OrderStatus) row[1]);
+            if (((Number) row[2]).intValue() == 0) {
+                withoutItems.add((Long) row[0]);
+            }
+        }
+
+        // Validate each order, grouping the movable ones by the status they move from
+        Map<Order.OrderStatus, List<Long>> bySource = new EnumMap<>(Order.OrderStatus.class);
+        for (Long orderId : orderIds) {
+            Order.OrderStatus status = current.get(orderId);
+            if (status == null) {
+                results.put(orderId, outcome(orderId, BulkStatusChange.Outcome.NOT_FOUND, null, null));
+            } else if (expected != null && status != expected) {
+                results.put(orderId, outcome(orderId, BulkStatusChange.Outcome.STATUS_MISMATCH, "currentStatus", status));
+            } else if (status == target) {
+                results.put(orderId, outcome(orderId, BulkStatusChange.Outcome.UNCHANGED, "currentStatus", status));
+            } else if (!status.canTransitionTo(target)) {
+                results.put(orderId, outcome(orderId, BulkStatusChange.Outcome.ILLEGAL_TRANSITION, "currentStatus", status));
+            } else if (status == Order.OrderStatus.PENDING && target != Order.OrderStatus.CANCELLED
+                    && withoutItems.contains(orderId)) {
+                // Accepted by the async checkout but not filled from the cart yet
+                results.put(orderId, outcome(orderId, BulkStatusChange.Outcome.CHECKOUT_IN_PROGRESS, "currentStatus", status));
+            } else {
+                bySource.computeIfAbsent(status, s -> new ArrayList<>()).add(orderId);
+            }
+        }
+
+        // One guarded UPDATE per source status
+        List<Long> moved = new ArrayList<>();
+        bySource.forEach((source, ids) -> {
+            int updated = orderRepository.transitionStatus(ids, source, target);
+            Map<Long, Order.OrderStatus> after = new HashMap<>();
+            if (updated < ids.size()) {
+                // Some orders changed status after they were read; see which ones this UPDATE moved
+                orderRepository.findStatusesByIdIn(ids).forEach(row -> after.put((Long) row[0], (Order.OrderStatus) row[1]));
+            }
+            for (Long orderId : ids) {
+                if (updated == ids.size() || after.get(orderId) == target) {
+                    results.put(orderId, outcome(orderId, BulkStatusChange.Outcome.UPDATED, "previousStatus", source));
+                    moved.add(orderId);
+                } else {
+                    results.put(orderId, outcome(orderId, BulkStatusChange.Outcome.CONFLICT, null, null));
+                }
+            }
+        });
+        orderHistoryProjector.projectStatus(moved, target);
+        if (target == Order.OrderStatus.CANCELLED) {
+            salesRollupService.reverseOrders(moved);
+        }
+    }
+
+    private static Map<String, Object> outcome(Long orderId, BulkStatusChange.Outcome outcome,
+                                               String statusKey, Order.OrderStatus status) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("orderId", orderId);
+        result.put("outcome", outcome);
+        if (statusKey != null) {
+            result.put(statusKey, status);
+        }
+        return result;
     }
 
     public void deleteOrder(Long id) {
+        orderRepository.findById(id)
+                .filter(order -> order.getOrderStatus() != Order.OrderStatus.CANCELLED)
+                .ifPresent(order -> salesRollupService.reverseOrders(List.of(id)));
         orderRepository.deleteById(id);
+        orderHistoryProjector.remove(id);
     }
 
     public boolean canCancelOrder(Long orderId) {
         return orderRepository.findById(orderId)
-                .map(order -> order.getOrderStatus() == Order.OrderStatus.PENDING || 
-                             order.getOrderStatus() == Order.OrderStatus.CONFIRMED)
+                .map(order -> order.getOrderStatus().canTransitionTo(Order.OrderStatus.CANCELLED))
                 .orElse(false);
     }
 
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public Order cancelOrder(Long orderId) {
-        return orderRepository.findById(orderId)
-                .map(order -> {
-                    if (canCancelOrder(orderId)) {
-                        order.setOrderStatus(Order.OrderStatus.CANCELLED);
-                        return orderRepository.save(order);
-                    } else {
-                        throw new RuntimeException("Cannot cancel order in current status: " + order.getOrderStatus());
-                    }
-                })
-                .orElseThrow(() -> new RuntimeException("Order not found with id: " + orderId));
+        return optimisticRetryExecutor.execute("cancelOrder", () ->
+                orderRepository.findById(orderId)
+                        .map(order -> {
+                            if (!order.getOrderStatus().canTransitionTo(Order.OrderStatus.CANCELLED)) {
+                                throw new IllegalStateException("Cannot cancel order in current status: " + order.getOrderStatus());
+                            }
+                            order.setOrderStatus(Order.OrderStatus.CANCELLED);
+                            Order cancelled = projectHeader(orderRepository.save(order));
+                            salesRollupService.reverseOrders(List.of(orderId));
+                            return cancelled;
+                        })
+                        .orElseThrow(() -> new RuntimeException("Order not found with id: " + orderId)));
+    }
+
+    private Order projectHeader(Order order) {
+        orderHistoryProjector.projectHeader(order);
+        return order;
+    }
+
+    // Cancelled orders are left out of the sales rollups; cancelling takes the order's lines out.
+    // CANCELLED is final (see canTransitionTo), so an order never comes back into them.
+    // Called after the order's own writes, so the shared rollup rows are locked only until the commit.
+    private void rollUpStatusChange(Long orderId, Order.OrderStatus previous, Order.OrderStatus next) {
+        if (previous != Order.OrderStatus.CANCELLED && next == Order.OrderStatus.CANCELLED) {
+            salesRollupService.reverseOrders(List.of(orderId));
+        }
     }
 }
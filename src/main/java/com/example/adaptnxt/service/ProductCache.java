@@ -0,0 +1,151 @@
+package com.example.adaptnxt.service;
+
+import com.example.adaptnxt.models.Product;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Bounded read-through cache for product lookups by id. Entries are evicted
+ * least-recently-used once the cache is full and expire after a fixed TTL.
+ * ProductService invalidates entries once every write commits so stock checks
+ * never see a value older than the last change made through the service.
+ * Entries are private copies: callers get their own instance on every hit,
+ * so nothing they change on it reaches the cache or other callers.
+ */
+@Component
+public class ProductCache {
+
+    private final Map<Long, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong expirations = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    // Bumped on every invalidation so a load racing with a write is not cached
+    private final AtomicLong writeEpoch = new AtomicLong();
+
+    @Value("${product.cache.max-size:10000}")
+    private int maxSize;
+
+    @Value("${product.cache.ttl-seconds:60}")
+    private long ttlSeconds;
+
+    @Value("${product.cache.enabled:true}")
+    private boolean enabled;
+
+    public Optional<Product> get(Long id, Function<Long, Optional<Product>> loader) {
+        if (!enabled || id == null) {
+            return loader.apply(id);
+        }
+
+        long now = System.nanoTime();
+        synchronized (entries) {
+            Entry entry = entries.get(id);
+            if (entry != null) {
+                if (entry.expiresAt - now > 0) {
+                    hits.incrementAndGet();
+                    return Optional.of(copyOf(entry.product));
+                }
+                entries.remove(id);
+                expirations.incrementAndGet();
+            }
+        }
+
+        misses.incrementAndGet();
+        long epoch = writeEpoch.get();
+        Optional<Product> loaded = loader.apply(id);
+        loaded.ifPresent(product -> put(id, product, epoch));
+        return loaded;
+    }
+
+    public void invalidate(Long id) {
+        writeEpoch.incrementAndGet();
+        invalidations.incrementAndGet();
+        synchronized (entries) {
+            entries.remove(id);
+        }
+    }
+
+    public void invalidateAll() {
+        writeEpoch.incrementAndGet();
+        invalidations.incrementAndGet();
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        long hitCount = hits.get();
+        long missCount = misses.get();
+        long requests = hitCount + missCount;
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        synchronized (entries) {
+            stats.put("size", entries.size());
+        }
+        stats.put("maxSize", maxSize);
+        stats.put("ttlSeconds", ttlSeconds);
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("hitRate", requests == 0 ? 0.0 : (double) hitCount / requests);
+        stats.put("evictions", evictions.get());
+        stats.put("expirations", expirations.get());
+        stats.put("invalidations", invalidations.get());
+        return stats;
+    }
+
+    private void put(Long id, Product product, long epoch) {
+        long expiresAt = System.nanoTime() + ttlSeconds * 1_000_000_000L;
+        synchronized (entries) {
+            if (writeEpoch.get() != epoch) {
+                return;
+            }
+            entries.put(id, new Entry(copyOf(product), expiresAt));
+            if (entries.size() > maxSize) {
+                // Access-ordered map: the first entry is the least recently used
+                Iterator<Map.Entry<Long, Entry>> it = entries.entrySet().iterator();
+                while (entries.size() > maxSize && it.hasNext()) {
+                    it.next();
+                    it.remove();
+                    evictions.incrementAndGet();
+                }
+            }
+        }
+    }
+
+    // Detached snapshot, so a managed entity from the loader never ends up shared between requests
+    private static Product copyOf(Product product) {
+        Product copy = new Product();
+        copy.setId(product.getId());
+        copy.setName(product.getName());
+        copy.setDescription(product.getDescription());
+        copy.setPrice(product.getPrice());
+        copy.setCategory(product.getCategory());
+        copy.setStock(product.getStock());
+        copy.setStockShards(product.getStockShards());
+        copy.setImageUrl(product.getImageUrl());
+        copy.setVersion(product.getVersion());
+        copy.setCreatedAt(product.getCreatedAt());
+        copy.setUpdatedAt(product.getUpdatedAt());
+        return copy;
+    }
+
+    private static final class Entry {
+        private final Product product;
+        private final long expiresAt;
+
+        private Entry(Product product, long expiresAt) {
+            this.product = product;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,406 @@
+package com.example.adaptnxt.service;
+
+import com.example.adaptnxt.models.Product;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Bulk product import for supplier onboarding. Rows are streamed from a CSV
+ * or NDJSON body, validated, and written in chunks of batched JDBC
+ * statements with one transaction per chunk, so a bad chunk only rolls back
+ * its own rows. Rows carrying an id are upserted; rows without one are inserted.
+ */
+@Service
+public class ProductImportService {
+
+    private static final Logger log = LoggerFactory.getLogger(ProductImportService.class);
+
+    public static final int DEFAULT_CHUNK_SIZE = 1000;
+    private static final int MAX_CHUNK_SIZE = 10000;
+    private static final int MAX_REPORTED_ERRORS = 1000;
+
+    private static final String INSERT_SQL =
+            "INSERT INTO products (name, description, price, category, stock, image_url, created_at, updated_at) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+    // Sharded (hot-SKU) products keep their stock: it lives in their shards, not in this column
+    private static final String UPSERT_SQL =
+            "INSERT INTO products (id, name, description, price, category, stock, image_url, created_at, updated_at) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?) AS new "
+            + "ON DUPLICATE KEY UPDATE name = new.name, description = new.description, "
+            + "price = new.price, category = new.category, stock = IF(stock_shards > 0, stock, new.stock), "
+            + "image_url = new.image_url, updated_at = new.updated_at, version = version + 1";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private ProductCache productCache;
+
+    @Autowired
+    private ProductSearchIndex productSearchIndex;
+
+    @Autowired
+    private CategoryFacetIndex categoryFacetIndex;
+
+    @Autowired
+    private InventoryLedger inventoryLedger;
+
+    public enum Format {
+        CSV, NDJSON
+    }
+
+    public Map<String, Object> importProducts(InputStream input, Format format, int chunkSize) throws IOException {
+        ImportReport report = new ImportReport();
+        int effectiveChunkSize = Math.max(1, Math.min(chunkSize, MAX_CHUNK_SIZE));
+        long started = System.currentTimeMillis();
+        if (inventoryLedger.isEnabled()) {
+            // Imported rows set absolute stock levels, so pending ledger deltas must land first
+            inventoryLedger.flush();
+        }
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8))) {
+            RowReader rows = format == Format.CSV ? new CsvRowReader(reader) : new NdjsonRowReader(reader);
+            List<ImportRow> chunk = new ArrayList<>(effectiveChunkSize);
+            ImportRow row;
+            while ((row = rows.next(report)) != null) {
+                String error = validate(row.product);
+                if (error != null) {
+                    report.fail(row.rowNumber, error);
+                    continue;
+                }
+                chunk.add(row);
+                if (chunk.size() >= effectiveChunkSize) {
+                    writeChunk(chunk, report);
+                    chunk.clear();
+                }
+            }
+            if (!chunk.isEmpty()) {
+                writeChunk(chunk, report);
+            }
+        } finally {
+            // Rows went straight to JDBC, so refresh the in-memory catalog views once at the end
+            if (report.inserted + report.upserted > 0) {
+                productCache.invalidateAll();
+                inventoryLedger.resetAll();
+                productSearchIndex.rebuildFromDatabase();
+                categoryFacetIndex.rebuild();
+            }
+        }
+
+        long elapsed = System.currentTimeMillis() - started;
+        log.info("Product import finished in {} ms: {} inserted, {} upserted, {} failed",
+                elapsed, report.inserted, report.upserted, report.failed);
+        return report.toMap(elapsed);
+    }
+
+    private void writeChunk(List<ImportRow> chunk, ImportReport report) {
+        List<Object[]> inserts = new ArrayList<>();
+        List<Object[]> upserts = new ArrayList<>();
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        for (ImportRow row : chunk) {
+            Product p = row.product;
+            if (p.getId() == null) {
+                inserts.add(new Object[] {p.getName(), p.getDescription(), p.getPrice(), p.getCategory(),
+                        p.getStock(), p.getImageUrl(), now, now});
+            } else {
+                upserts.add(new Object[] {p.getId(), p.getName(), p.getDescription(), p.getPrice(), p.getCategory(),
+                        p.getStock(), p.getImageUrl(), now, now});
+            }
+        }
+
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        try {
+            transaction.executeWithoutResult(status -> {
+                if (!inserts.isEmpty()) {
+                    jdbcTemplate.batchUpdate(INSERT_SQL, inserts);
+                }
+                if (!upserts.isEmpty()) {
+                    jdbcTemplate.batchUpdate(UPSERT_SQL, upserts);
+                }
+            });
+            report.inserted += inserts.size();
+            report.upserted += upserts.size();
+        } catch (RuntimeException e) {
+            String message = "Chunk rolled back: " + rootMessage(e);
+            log.warn("Product import chunk starting at row {} failed: {}", chunk.get(0).rowNumber, message);
+            for (ImportRow row : chunk) {
+                report.fail(row.rowNumber, message);
+            }
+        }
+    }
+
+    private String validate(Product product) {
+        if (product.getName() == null || product.getName().isBlank()) {
+            return "name is required";
+        }
+        if (product.getName().length() > 255) {
+            return "name is longer than 255 characters";
+        }
+        if (product.getCategory() == null || product.getCategory().isBlank()) {
+            return "category is required";
+        }
+        if (product.getCategory().length() > 255) {
+            return "category is longer than 255 characters";
+        }
+        if (product.getDescription() != null && product.getDescription().length() > 1000) {
+            return "description is longer than 1000 characters";
+        }
+        if (product.getImageUrl() != null && product.getImageUrl().length() > 255) {
+            return "imageUrl is longer than 255 characters";
+        }
+        if (product.getPrice() == null) {
+            return "price is required";
+        }
+        if (product.getPrice().signum() < 0 || product.getPrice().scale() > 2
+                || product.getPrice().precision() - product.getPrice().scale() > 8) {
+            return "price must be between 0 and 99999999.99 with at most 2 decimals";
+        }
+        if (product.getStock() == null || product.getStock() < 0) {
+            return "stock must be a non-negative integer";
+        }
+        return null;
+    }
+
+    private static String rootMessage(Throwable e) {
+        Throwable root = e;
+        while (root.getCause() != null && root.getCause() != root) {
+            root = root.getCause();
+        }
+        return root.getMessage();
+    }
+
+    private static final class ImportRow {
+        private final long rowNumber;
+        private final Product product;
+
+        private ImportRow(long rowNumber, Product product) {
+            this.rowNumber = rowNumber;
+            this.product = product;
+        }
+    }
+
+    private static final class ImportReport {
+        private long rows;
+        private long inserted;
+        private long upserted;
+        private long failed;
+        private final List<Map<String, Object>> errors = new ArrayList<>();
+
+        void fail(long rowNumber, String message) {
+            failed++;
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                Map<String, Object> error = new LinkedHashMap<>();
+                error.put("row", rowNumber);
+                error.put("error", message);
+                errors.add(error);
+            }
+        }
+
+        Map<String, Object> toMap(long elapsedMillis) {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("rows", rows);
+            map.put("inserted", inserted);
+            map.put("upserted", upserted);
+            map.put("failed", failed);
+            map.put("elapsedMillis", elapsedMillis);
+            map.put("errors", errors);
+            map.put("errorsTruncated", failed > errors.size());
+            return map;
+        }
+    }
+
+    private interface RowReader {
+        // Next parseable row, or null at end of input; unparseable rows are reported and skipped
+        ImportRow next(ImportReport report) throws IOException;
+    }
+
+    private final class NdjsonRowReader implements RowReader {
+        private final BufferedReader reader;
+        private final ObjectMapper mapper;
+        private long rowNumber = 0;
+
+        private NdjsonRowReader(BufferedReader reader) {
+            this.reader = reader;
+            this.mapper = objectMapper.copy().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        }
+
+        @Override
+        public ImportRow next(ImportReport report) throws IOException {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                rowNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                report.rows++;
+                try {
+                    return new ImportRow(rowNumber, mapper.readValue(line, Product.class));
+                } catch (JsonProcessingException e) {
+                    report.fail(rowNumber, "invalid JSON: " + e.getOriginalMessage());
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * RFC 4180 style CSV with a header row naming the columns (id, name,
+     * description, price, category, stock, imageUrl; id and the optional
+     * text columns may be omitted). Quoted fields may contain commas,
+     * doubled quotes and line breaks.
+     */
+    private static final class CsvRowReader implements RowReader {
+        private final BufferedReader reader;
+        private Map<String, Integer> columns;
+        private long rowNumber = 0;
+        private boolean eof = false;
+
+        private CsvRowReader(BufferedReader reader) {
+            this.reader = reader;
+        }
+
+        @Override
+        public ImportRow next(ImportReport report) throws IOException {
+            if (columns == null) {
+                List<String> header = readRecord();
+                if (header == null) {
+                    return null;
+                }
+                columns = new HashMap<>();
+                for (int i = 0; i < header.size(); i++) {
+                    columns.put(header.get(i).trim().toLowerCase(Locale.ROOT).replace("_", ""), i);
+                }
+                for (String required : List.of("name", "price", "category", "stock")) {
+                    if (!columns.containsKey(required)) {
+                        throw new IllegalArgumentException("CSV header is missing required column: " + required);
+                    }
+                }
+            }
+
+            List<String> record;
+            while ((record = readRecord()) != null) {
+                rowNumber++;
+                if (record.size() == 1 && record.get(0).isBlank()) {
+                    continue;
+                }
+                report.rows++;
+                try {
+                    return new ImportRow(rowNumber, toProduct(record));
+                } catch (IllegalArgumentException e) {
+                    report.fail(rowNumber, e.getMessage());
+                }
+            }
+            return null;
+        }
+
+        private Product toProduct(List<String> record) {
+            Product product = new Product();
+            String id = field(record, "id");
+            product.setId(id == null ? null : parse(id, "id", Long::valueOf));
+            product.setName(field(record, "name"));
+            product.setDescription(field(record, "description"));
+            String price = field(record, "price");
+            product.setPrice(price == null ? null : parse(price, "price", BigDecimal::new));
+            product.setCategory(field(record, "category"));
+            String stock = field(record, "stock");
+            product.setStock(stock == null ? null : parse(stock, "stock", Integer::valueOf));
+            product.setImageUrl(field(record, "imageurl"));
+            return product;
+        }
+
+        private String field(List<String> record, String column) {
+            Integer index = columns.get(column);
+            if (index == null || index >= record.size()) {
+                return null;
+            }
+            String value = record.get(index).trim();
+            return value.isEmpty() ? null : value;
+        }
+
+        private static <T> T parse(String value, String column, Function<String, T> parser) {
+            try {
+                return parser.apply(value);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException(column + " is not a valid number: " + value);
+            }
+        }
+
+        private List<String> readRecord() throws IOException {
+            if (eof) {
+                return null;
+            }
+            List<String> fields = new ArrayList<>();
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+            boolean sawAnything = false;
+            int c;
+            while ((c = reader.read()) != -1) {
+                sawAnything = true;
+                char ch = (char) c;
+                if (quoted) {
+                    if (ch == '"') {
+                        reader.mark(1);
+                        int next = reader.read();
+                        if (next == '"') {
+                            field.append('"');
+                        } else {
+                            quoted = false;
+                            if (next != -1) {
+                                reader.reset();
+                            }
+                        }
+                    } else {
+                        field.append(ch);
+                    }
+                } else if (ch == '"') {
+                    quoted = true;
+                } else if (ch == ',') {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                } else if (ch == '\n') {
+                    fields.add(field.toString());
+                    return fields;
+                } else if (ch != '\r') {
+                    field.append(ch);
+                }
+            }
+            eof = true;
+            if (!sawAnything) {
+                return null;
+            }
+            fields.add(field.toString());
+            return fields;
+        }
+    }
+}
@@ -0,0 +1,348 @@
+package com.example.adaptnxt.service;
+
+import com.example.adaptnxt.models.Product;
+import com.example.adaptnxt.repository.ProductRepository;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * In-memory inverted index over product name, category and description.
+ * Kept in sync by ProductService on create/update/delete and rebuilt from
+ * the database when the application starts.
+ */
+@Component
+public class ProductSearchIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(ProductSearchIndex.class);
+
+    // Field bits stored in the postings lists
+    static final int NAME = 1;
+    static final int CATEGORY = 2;
+    static final int DESCRIPTION = 4;
+
+    private static final int NAME_WEIGHT = 8;
+    private static final int CATEGORY_WEIGHT = 4;
+    private static final int DESCRIPTION_WEIGHT = 1;
+
+    private Postings postings = new Postings();
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Ids of products indexed or removed while a rebuild is scanning, null when none is running
+    private Set<Long> changedDuringRebuild;
+
+    private final Object rebuildMonitor = new Object();
+
+    private volatile boolean ready = false;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${product.search.index.enabled:true}")
+    private boolean enabled;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildOnStartup() {
+        if (!enabled) {
+            log.info("Product search index disabled, searches will use SQL LIKE");
+            return;
+        }
+        rebuildFromDatabase();
+    }
+
+    /**
+     * Re-reads the whole catalog through a streaming cursor, one product in
+     * memory at a time, into a new index that is swapped in at the end.
+     * Searches and writes keep using the current index while the scan runs.
+     */
+    public void rebuildFromDatabase() {
+        if (!enabled) {
+            return;
+        }
+        synchronized (rebuildMonitor) {
+            lock.writeLock().lock();
+            try {
+                changedDuringRebuild = new HashSet<>();
+            } finally {
+                lock.writeLock().unlock();
+            }
+            try {
+                Postings built = new Postings();
+                TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+                transaction.setReadOnly(true);
+                transaction.executeWithoutResult(status -> {
+                    try (Stream<Product> products = productRepository.streamAll()) {
+                        products.forEach(product -> {
+                            built.add(product.getId(), analyze(product));
+                            entityManager.detach(product);
+                        });
+                    }
+                });
+
+                // Writes made during the scan may be missing from it, so their products are re-read before the swap
+                Set<Long> changed;
+                while ((changed = swapOrDrain(built)) != null) {
+                    Set<Long> ids = changed;
+                    transaction.executeWithoutResult(status -> {
+                        ids.forEach(built::remove);
+                        productRepository.findAllById(ids)
+                                .forEach(product -> built.add(product.getId(), analyze(product)));
+                    });
+                }
+                log.info("Product search index built: {} products, {} distinct tokens",
+                        built.documents.size(), built.tokens.size());
+            } finally {
+                lock.writeLock().lock();
+                try {
+                    changedDuringRebuild = null;
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            }
+        }
+    }
+
+    // Ready once the initial build has completed; until then callers fall back to SQL
+    public boolean isReady() {
+        return enabled && ready;
+    }
+
+    // Swaps the built index in when no write is left to replay, otherwise hands back the ids to re-read
+    private Set<Long> swapOrDrain(Postings built) {
+        lock.writeLock().lock();
+        try {
+            if (changedDuringRebuild.isEmpty()) {
+                postings = built;
+                ready = true;
+                return null;
+            }
+            Set<Long> changed = changedDuringRebuild;
+            changedDuringRebuild = new HashSet<>();
+            return changed;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void index(Product product) {
+        if (!enabled || product == null || product.getId() == null) {
+            return;
+        }
+        Map<String, Integer> fieldsByToken = analyze(product);
+        lock.writeLock().lock();
+        try {
+            postings.remove(product.getId());
+            postings.add(product.getId(), fieldsByToken);
+            changed(product.getId());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Long productId) {
+        if (!enabled || productId == null) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            postings.remove(productId);
+            changed(productId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the ids of all products matching every term of the query, best
+     * match first. Each term matches indexed tokens it is a prefix of; exact
+     * token hits and hits in the name rank above category and description hits.
+     */
+    public SearchResult search(String query, boolean nameOnly, Pageable pageable) {
+        List<String> terms = tokenize(query);
+        if (terms.isEmpty()) {
+            return new SearchResult(List.of(), 0);
+        }
+
+        Map<Long, Integer> scores = null;
+        lock.readLock().lock();
+        try {
+            for (String term : terms) {
+                Map<Long, Integer> termScores = scoreTerm(term, nameOnly);
+                if (scores == null) {
+                    scores = termScores;
+                } else {
+                    // Every term must match: keep the intersection
+                    Map<Long, Integer> merged = new HashMap<>();
+                    for (Map.Entry<Long, Integer> entry : scores.entrySet()) {
+                        Integer termScore = termScores.get(entry.getKey());
+                        if (termScore != null) {
+                            merged.put(entry.getKey(), entry.getValue() + termScore);
+                        }
+                    }
+                    scores = merged;
+                }
+                if (scores.isEmpty()) {
+                    return new SearchResult(List.of(), 0);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        List<Map.Entry<Long, Integer>> ranked = new ArrayList<>(scores.entrySet());
+        ranked.sort(Map.Entry.<Long, Integer>comparingByValue(Comparator.reverseOrder())
+                .thenComparing(Map.Entry.comparingByKey()));
+
+        int from = (int) Math.min(pageable.getOffset(), ranked.size());
+        int to = Math.min(from + pageable.getPageSize(), ranked.size());
+        List<Long> ids = new ArrayList<>(to - from);
+        for (Map.Entry<Long, Integer> entry : ranked.subList(from, to)) {
+            ids.add(entry.getKey());
+        }
+        return new SearchResult(ids, ranked.size());
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return postings.documents.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private Map<Long, Integer> scoreTerm(String term, boolean nameOnly) {
+        Map<Long, Integer> termScores = new HashMap<>();
+        NavigableMap<String, Map<Long, Integer>> matches =
+                postings.tokens.subMap(term, true, term + Character.MAX_VALUE, false);
+        for (Map.Entry<String, Map<Long, Integer>> tokenEntry : matches.entrySet()) {
+            boolean exact = tokenEntry.getKey().equals(term);
+            for (Map.Entry<Long, Integer> posting : tokenEntry.getValue().entrySet()) {
+                int fields = posting.getValue();
+                if (nameOnly) {
+                    fields &= NAME;
+                }
+                if (fields == 0) {
+                    continue;
+                }
+                int score = weight(fields) * (exact ? 2 : 1);
+                termScores.merge(posting.getKey(), score, Math::max);
+            }
+        }
+        return termScores;
+    }
+
+    private void changed(Long productId) {
+        if (changedDuringRebuild != null) {
+            changedDuringRebuild.add(productId);
+        }
+    }
+
+    // Token -> bits of the fields it occurs in
+    private static Map<String, Integer> analyze(Product product) {
+        Map<String, Integer> fieldsByToken = new HashMap<>();
+        for (String token : tokenize(product.getName())) {
+            fieldsByToken.merge(token, NAME, (a, b) -> a | b);
+        }
+        for (String token : tokenize(product.getCategory())) {
+            fieldsByToken.merge(token, CATEGORY, (a, b) -> a | b);
+        }
+        for (String token : tokenize(product.getDescription())) {
+            fieldsByToken.merge(token, DESCRIPTION, (a, b) -> a | b);
+        }
+        return fieldsByToken;
+    }
+
+    private static int weight(int fields) {
+        int weight = 0;
+        if ((fields & NAME) != 0) weight += NAME_WEIGHT;
+        if ((fields & CATEGORY) != 0) weight += CATEGORY_WEIGHT;
+        if ((fields & DESCRIPTION) != 0) weight += DESCRIPTION_WEIGHT;
+        return weight;
+    }
+
+    static List<String> tokenize(String text) {
+        if (text == null || text.isBlank()) {
+            return List.of();
+        }
+        List<String> tokens = new ArrayList<>();
+        for (String token : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+            if (!token.isEmpty()) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+
+    private static final class Postings {
+        // token -> (productId -> field bits the token occurs in)
+        private final NavigableMap<String, Map<Long, Integer>> tokens = new TreeMap<>();
+
+        // productId -> tokens indexed for it, used to unindex on update/delete
+        private final Map<Long, Set<String>> documents = new HashMap<>();
+
+        void add(Long productId, Map<String, Integer> fieldsByToken) {
+            for (Map.Entry<String, Integer> entry : fieldsByToken.entrySet()) {
+                tokens.computeIfAbsent(entry.getKey(), k -> new HashMap<>())
+                        .put(productId, entry.getValue());
+            }
+            documents.put(productId, new HashSet<>(fieldsByToken.keySet()));
+        }
+
+        void remove(Long productId) {
+            Set<String> indexed = documents.remove(productId);
+            if (indexed == null) {
+                return;
+            }
+            for (String token : indexed) {
+                Map<Long, Integer> list = tokens.get(token);
+                if (list != null) {
+                    list.remove(productId);
+                    if (list.isEmpty()) {
+                        tokens.remove(token);
+                    }
+                }
+            }
+        }
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class SearchResult {
+        private final List<Long> productIds;
+        private final long totalMatches;
+    }
+}
@@ -3,19 +3,66 @@ package com.example.adaptnxt.service;
 import com.example.adaptnxt.models.Product;
 import com.example.adaptnxt.repository.ProductRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+
+import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 public class ProductService {
 
+    // Properties product listings may be keyset-sorted by, with how to read them back from a cursor
+    private static final Map<String, Function<String, Object>> KEYSET_PROPERTIES = Map.of(
+            "id", Long::valueOf,
+            "name", value -> value,
+            "price", BigDecimal::new,
+            "stock", Integer::valueOf);
+
     @Autowired
     private ProductRepository productRepository;
 
+    @Autowired
+    private ProductSearchIndex productSearchIndex;
+
+    @Autowired
+    private ProductCache productCache;
+
+    @Autowired
+    private CategoryFacetIndex categoryFacetIndex;
+
+    @Autowired
+    private InventoryLedger inventoryLedger;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private StockShardService stockShardService;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
     public List<Product> getAllProducts() {
         return productRepository.findAll();
     }
@@ -24,30 +71,115 @@ public class ProductService {
         return productRepository.findAll(pageable);
     }
 
+    public KeysetPage<Product> scrollProducts(String after, int size, String sortBy, String sortDir, boolean includeTotal) {
+        Sort sort = keysetSort(sortBy, sortDir);
+        return KeysetPage.scroll(after, size, sort, KEYSET_PROPERTIES,
+                (position, limit) -> productRepository.findAllBy(position, sort, limit),
+                includeTotal ? productRepository::count : null);
+    }
+
+    public KeysetPage<Product> scrollProductsByCategory(String category, String after, int size,
+                                                        String sortBy, String sortDir, boolean includeTotal) {
+        Sort sort = keysetSort(sortBy, sortDir);
+        return KeysetPage.scroll(after, size, sort, KEYSET_PROPERTIES,
+                (position, limit) -> productRepository.findByCategory(category, position, sort, limit),
+                includeTotal ? () -> productRepository.countByCategory(category) : null);
+    }
+
+    public KeysetPage<Product> scrollAvailableProducts(String after, int size, String sortBy, String sortDir,
+                                                       boolean includeTotal) {
+        Sort sort = keysetSort(sortBy, sortDir);
+        return KeysetPage.scroll(after, size, sort, KEYSET_PROPERTIES,
+                (position, limit) -> productRepository.findByStockGreaterThan(0, position, sort, limit),
+                includeTotal ? () -> productRepository.countByStockGreaterThan(0) : null);
+    }
+
+    private Sort keysetSort(String sortBy, String sortDir) {
+        if (!KEYSET_PROPERTIES.containsKey(sortBy)) {
+            throw new IllegalArgumentException("Unsupported sort property: " + sortBy);
+        }
+        return KeysetCursor.sort(sortBy, sortDir);
+    }
+
     public Optional<Product> getProductById(Long id) {
-        return productRepository.findById(id);
+        return productCache.get(id, productRepository::findById);
+    }
+
+    // Several products in one query, keyed by id; ids that do not exist are left out
+    public Map<Long, Product> getProductsByIds(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return Map.of();
+        }
+        return productRepository.findAllById(ids).stream()
+                .collect(Collectors.toMap(Product::getId, Function.identity()));
     }
 
     public Product createProduct(Product product) {
-        return productRepository.save(product);
+        Product savedProduct = productRepository.save(product);
+        productSearchIndex.index(savedProduct);
+        categoryFacetIndex.update(savedProduct);
+        return savedProduct;
     }
 
-    public Product updateProduct(Long id, Product productDetails) {
-        return productRepository.findById(id)
-                .map(product -> {
-                    product.setName(productDetails.getName());
-                    product.setDescription(productDetails.getDescription());
-                    product.setPrice(productDetails.getPrice());
-                    product.setCategory(productDetails.getCategory());
-                    product.setStock(productDetails.getStock());
-                    product.setImageUrl(productDetails.getImageUrl());
-                    return productRepository.save(product);
-                })
-                .orElseThrow(() -> new RuntimeException("Product not found with id: " + id));
+    /**
+     * Overwrites the product with the given values. When expectedVersion is
+     * set the write only applies to that version and fails with an
+     * OptimisticLockingFailureException otherwise. The values are absolute, so
+     * a conflict is reported to the caller instead of retried on top of
+     * whatever changed in between.
+     */
+    public Product updateProduct(Long id, Product productDetails, Long expectedVersion) {
+        if (inventoryLedger.isEnabled()) {
+            // The admin sets an absolute stock level, so pending ledger deltas must land first
+            inventoryLedger.flush();
+        }
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        Product savedProduct = transaction.execute(status -> {
+            Product product = productRepository.findById(id)
+                    .orElseThrow(() -> new RuntimeException("Product not found with id: " + id));
+            if (expectedVersion != null && !expectedVersion.equals(product.getVersion())) {
+                throw new OptimisticLockingFailureException("Product " + id + " is at version "
+                        + product.getVersion() + ", not " + expectedVersion);
+            }
+            product.setName(productDetails.getName());
+            product.setDescription(productDetails.getDescription());
+            product.setPrice(productDetails.getPrice());
+            product.setCategory(productDetails.getCategory());
+            product.setStock(productDetails.getStock());
+            product.setImageUrl(productDetails.getImageUrl());
+            if (StockShardService.isSharded(product)) {
+                stockShardService.redistribute(id, productDetails.getStock());
+            }
+            return productRepository.saveAndFlush(product);
+        });
+        evictFromCache(id);
+        inventoryLedger.reset(id);
+        productSearchIndex.index(savedProduct);
+        categoryFacetIndex.update(savedProduct);
+        return savedProduct;
+    }
+
+    // Hot-SKU mode: spread the product's stock over shardCount rows so checkouts stop contending on one row
+    public Product enableStockSharding(Long id, int shardCount) {
+        Product product = stockShardService.enable(id, shardCount);
+        evictFromCache(id);
+        categoryFacetIndex.update(product);
+        return product;
+    }
+
+    public Product disableStockSharding(Long id) {
+        Product product = stockShardService.disable(id);
+        evictFromCache(id);
+        categoryFacetIndex.update(product);
+        return product;
     }
 
     public void deleteProduct(Long id) {
         productRepository.deleteById(id);
+        evictFromCache(id);
+        inventoryLedger.reset(id);
+        productSearchIndex.remove(id);
+        categoryFacetIndex.remove(id);
     }
 
     public Page<Product> getProductsByCategory(String category, Pageable pageable) {
@@ -55,13 +187,40 @@ public class ProductService {
     }
 
     public Page<Product> searchProductsByName(String name, Pageable pageable) {
+        if (useSearchIndex(pageable)) {
+            return searchIndex(name, true, pageable);
+        }
         return productRepository.findByNameContainingIgnoreCase(name, pageable);
     }
 
     public Page<Product> searchProducts(String searchTerm, Pageable pageable) {
+        if (useSearchIndex(pageable)) {
+            return searchIndex(searchTerm, false, pageable);
+        }
         return productRepository.searchByNameOrCategory(searchTerm, pageable);
     }
 
+    // The index returns results by relevance, so explicitly sorted requests keep using SQL
+    private boolean useSearchIndex(Pageable pageable) {
+        return productSearchIndex.isReady() && pageable.getSort().isUnsorted();
+    }
+
+    private Page<Product> searchIndex(String query, boolean nameOnly, Pageable pageable) {
+        ProductSearchIndex.SearchResult result = productSearchIndex.search(query, nameOnly, pageable);
+        if (result.getProductIds().isEmpty()) {
+            return new PageImpl<>(List.of(), pageable, result.getTotalMatches());
+        }
+
+        // Load the page in one query and restore the ranking order
+        Map<Long, Product> byId = productRepository.findAllById(result.getProductIds()).stream()
+                .collect(Collectors.toMap(Product::getId, Function.identity()));
+        List<Product> products = result.getProductIds().stream()
+                .map(byId::get)
+                .filter(product -> product != null)
+                .collect(Collectors.toList());
+        return new PageImpl<>(products, pageable, result.getTotalMatches());
+    }
+
     public Page<Product> getAvailableProducts(Pageable pageable) {
         return productRepository.findByStockGreaterThan(0, pageable);
     }
@@ -70,22 +229,104 @@ public class ProductService {
         return productRepository.findAllByOrderByNameAsc();
     }
 
+    // Hands every product to the consumer one at a time, detaching each after use so
+    // the persistence context never holds more than the current row
+    @Transactional(readOnly = true)
+    public void streamProducts(boolean sortedByName, Consumer<Product> consumer) {
+        try (Stream<Product> products = sortedByName
+                ? productRepository.streamAllOrderByName()
+                : productRepository.streamAll()) {
+            products.forEach(product -> {
+                consumer.accept(product);
+                entityManager.detach(product);
+            });
+        }
+    }
+
+    public List<Map<String, Object>> getCategoryFacets() {
+        return categoryFacetIndex.getCategoryFacets();
+    }
+
+    public Map<String, Object> getCacheStats() {
+        return productCache.getStats();
+    }
+
     public boolean isProductAvailable(Long productId, Integer quantity) {
-        return productRepository.findById(productId)
-                .map(product -> product.getStock() >= quantity)
+        return getAvailableStock(productId)
+                .map(stock -> stock >= quantity)
                 .orElse(false);
     }
 
+    // Stock that can still be sold; ahead of products.stock while the ledger has unflushed grants
+    public Optional<Integer> getAvailableStock(Long productId) {
+        if (inventoryLedger.isEnabled()) {
+            return inventoryLedger.getAvailable(productId);
+        }
+        return getProductById(productId).map(this::getAvailableStock);
+    }
+
+    // Same as above for a product the caller has already loaded, so no extra read is needed
+    public int getAvailableStock(Product product) {
+        if (inventoryLedger.isEnabled()) {
+            return inventoryLedger.getAvailable(product.getId()).orElse(0);
+        }
+        if (StockShardService.isSharded(product)) {
+            return stockShardService.getStock(product.getId());
+        }
+        return product.getStock();
+    }
+
+    // Single guarded UPDATE, so concurrent checkouts can never oversell or overwrite each other
+    @Transactional
     public Product reduceStock(Long productId, Integer quantity) {
-        return productRepository.findById(productId)
-                .map(product -> {
-                    if (product.getStock() >= quantity) {
-                        product.setStock(product.getStock() - quantity);
-                        return productRepository.save(product);
-                    } else {
-                        throw new RuntimeException("Insufficient stock for product: " + product.getName());
-                    }
-                })
+        if (inventoryLedger.isEnabled()) {
+            inventoryLedger.reserve(Map.of(productId, quantity));
+            stockChanged(productId, -quantity);
+            return productRepository.findById(productId)
+                    .orElseThrow(() -> new RuntimeException("Product not found with id: " + productId));
+        }
+        if (productRepository.decrementStock(productId, quantity) == 0) {
+            Product product = productRepository.findById(productId)
+                    .orElseThrow(() -> new RuntimeException("Product not found with id: " + productId));
+            if (!StockShardService.isSharded(product)) {
+                throw new RuntimeException("Insufficient stock for product: " + product.getName());
+            }
+            stockShardService.decrement(productId, quantity);
+        }
+        stockChanged(productId, -quantity);
+        Product product = productRepository.findById(productId)
                 .orElseThrow(() -> new RuntimeException("Product not found with id: " + productId));
+        // The bulk UPDATE bypassed the persistence context, so a product it already held would show the old stock
+        entityManager.refresh(product);
+        return product;
+    }
+
+    // Reserves stock for a whole order in one statement; fails without changing anything if any line is short
+    @Transactional
+    public void reduceStockForOrder(Map<Long, Integer> quantitiesByProductId) {
+        if (inventoryLedger.isEnabled()) {
+            // Granted from memory; the journal rows commit with the order and are flushed in batches
+            inventoryLedger.reserve(quantitiesByProductId);
+        } else {
+            // Hot products take their units from a shard each; the rest still go in one statement, which also
+            // hands back any product sharded since this read
+            Set<Long> sharded = new TreeSet<>(productRepository.findShardedIds(quantitiesByProductId.keySet()));
+            Map<Long, Integer> unsharded = new TreeMap<>(quantitiesByProductId);
+            sharded.forEach(unsharded::remove);
+            sharded.addAll(productRepository.decrementStockBatch(unsharded));
+            sharded.forEach(productId -> stockShardService.decrement(productId, quantitiesByProductId.get(productId)));
+        }
+        quantitiesByProductId.forEach((productId, quantity) -> stockChanged(productId, -quantity));
+    }
+
+    private void stockChanged(Long productId, int delta) {
+        evictFromCache(productId);
+        TransactionHooks.afterCommit(() -> categoryFacetIndex.adjustStock(productId, delta));
+    }
+
+    // Evicted again once the write commits: a read between the two would otherwise cache the old row
+    private void evictFromCache(Long productId) {
+        productCache.invalidate(productId);
+        TransactionHooks.afterCommit(() -> productCache.invalidate(productId));
     }
 }
@@ -0,0 +1,307 @@
+package com.example.adaptnxt.service;
+
+import com.example.adaptnxt.models.Order;
+import com.example.adaptnxt.models.OrderItem;
+import com.example.adaptnxt.models.SalesRollup;
+import com.example.adaptnxt.repository.OrderItemRepository;
+import com.example.adaptnxt.repository.SalesRollupRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Hourly and daily sales rollups (see SalesRollup). Order changes apply
+ * deltas: a checkout adds its lines, and a cancellation (or deleting a live
+ * order) subtracts them again from the buckets of the original order date.
+ * All deltas of one change go out as one batch of upserts, in the caller's
+ * transaction, so the rollups commit or roll back with the order.
+ *
+ * History is backfilled a day at a time, for closed days only (before
+ * today), so it never races checkouts for the current buckets: the day's rows
+ * are zeroed and set again from orders with set-based INSERT ... SELECT
+ * upserts in one short transaction, and rows left at zero are removed. A day
+ * can be rebuilt any number of times, by several instances at once, with the
+ * same result. This runs in the background after startup while the table is
+ * empty and on demand from the admin API.
+ */
+@Service
+public class SalesRollupService {
+
+    private static final Logger log = LoggerFactory.getLogger(SalesRollupService.class);
+
+    private static final String UPSERT_SQL =
+            "INSERT INTO sales_rollups (granularity, bucket_start, dimension, dimension_key, units, revenue, order_count) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?) AS delta "
+            + "ON DUPLICATE KEY UPDATE units = units + delta.units, revenue = revenue + delta.revenue, "
+            + "order_count = order_count + delta.order_count";
+
+    // Bucket and key expressions per granularity and dimension for the backfill's INSERT ... SELECT
+    private static final Map<SalesRollup.Granularity, String> BUCKET_SQL = Map.of(
+            SalesRollup.Granularity.HOUR, "DATE_FORMAT(o.order_date, '%Y-%m-%d %H:00:00')",
+            SalesRollup.Granularity.DAY, "DATE_FORMAT(o.order_date, '%Y-%m-%d 00:00:00')");
+
+    private static final Map<SalesRollup.Dimension, String> KEY_SQL = Map.of(
+            SalesRollup.Dimension.TOTAL, "'" + SalesRollup.TOTAL_KEY + "'",
+            SalesRollup.Dimension.PRODUCT, "CAST(oi.product_id AS CHAR)",
+            SalesRollup.Dimension.CATEGORY, "COALESCE(oi.category, p.category)");
+
+    private final Object rebuildLock = new Object();
+    private volatile Map<String, Object> lastRebuild = Map.of();
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private SalesRollupRepository salesRollupRepository;
+
+    @Autowired
+    private OrderItemRepository orderItemRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${sales.rollups.backfill-on-startup:true}")
+    private boolean backfillOnStartup;
+
+    // Checkout: adds the order's lines under the category each line snapshotted
+    public void recordOrder(Order order, List<OrderItem> items) {
+        List<Line> lines = new ArrayList<>(items.size());
+        for (OrderItem item : items) {
+            lines.add(new Line(order.getId(), order.getOrderDate(), item.getProduct().getId(),
+                    item.getCategory(), item.getQuantity(), item.getPriceAtTime()));
+        }
+        apply(lines, 1);
+    }
+
+    // Orders stop counting: cancelled, or deleted while live
+    public void reverseOrders(Collection<Long> orderIds) {
+        apply(loadLines(orderIds), -1);
+    }
+
+    // Dashboard read: precomputed rows only; key narrows PRODUCT or CATEGORY to one product or category
+    public List<SalesRollup> getRollups(SalesRollup.Granularity granularity, SalesRollup.Dimension dimension,
+                                        String key, LocalDateTime from, LocalDateTime to) {
+        if (dimension == SalesRollup.Dimension.TOTAL) {
+            key = SalesRollup.TOTAL_KEY;
+        }
+        return key == null
+                ? salesRollupRepository.findRange(granularity, dimension, from, to)
+                : salesRollupRepository.findRangeForKey(granularity, dimension, key, from, to);
+    }
+
+    // Off the startup thread: the application serves requests while history is filled in
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillIfEmpty() {
+        if (!backfillOnStartup || !jdbcTemplate.queryForList("SELECT 1 FROM sales_rollups LIMIT 1").isEmpty()) {
+            return;
+        }
+        Thread backfill = new Thread(() -> {
+            try {
+                rebuild(null, null);
+            } catch (RuntimeException e) {
+                log.error("Sales rollup backfill failed", e);
+            }
+        }, "sales-rollup-backfill");
+        backfill.setDaemon(true);
+        backfill.start();
+    }
+
+    /**
+     * Recomputes the rollups of every closed day in [from, to] from the orders
+     * themselves; null bounds default to the first order date and yesterday.
+     * Today is never rebuilt, its buckets are still taking checkouts.
+     */
+    public Map<String, Object> rebuild(LocalDate from, LocalDate to) {
+        synchronized (rebuildLock) {
+            long started = System.currentTimeMillis();
+            LocalDateTime startedAt = LocalDateTime.now();
+            LocalDate first = from != null ? from : dateOf("SELECT MIN(order_date) FROM orders");
+            LocalDate yesterday = LocalDate.now().minusDays(1);
+            LocalDate last = to != null && to.isBefore(yesterday) ? to : yesterday;
+            TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+            int days = 0;
+            int rows = 0;
+            if (first != null && last != null) {
+                for (LocalDate day = first; !day.isAfter(last); day = day.plusDays(1)) {
+                    LocalDateTime dayStart = day.atStartOfDay();
+                    rows += transaction.execute(status -> rebuildDay(dayStart));
+                    days++;
+                }
+            }
+
+            Map<String, Object> run = new LinkedHashMap<>();
+            run.put("startedAt", startedAt);
+            run.put("from", first);
+            run.put("to", last);
+            run.put("days", days);
+            run.put("rowsWritten", rows);
+            run.put("durationMs", System.currentTimeMillis() - started);
+            lastRebuild = run;
+            if (days > 0) {
+                log.info("Rebuilt sales rollups for {} days ({} rows) in {} ms", days, rows, run.get("durationMs"));
+            }
+            return run;
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("backfillOnStartup", backfillOnStartup);
+        stats.put("lastRebuild", lastRebuild);
+        return stats;
+    }
+
+    // The day's buckets (its 24 hours and the day itself) are set from its orders in one transaction
+    private int rebuildDay(LocalDateTime dayStart) {
+        Timestamp start = Timestamp.valueOf(dayStart);
+        Timestamp end = Timestamp.valueOf(dayStart.plusDays(1));
+        jdbcTemplate.update("UPDATE sales_rollups SET units = 0, revenue = 0, order_count = 0 "
+                + "WHERE bucket_start >= ? AND bucket_start < ?", start, end);
+        int rows = 0;
+        for (SalesRollup.Granularity granularity : SalesRollup.Granularity.values()) {
+            for (SalesRollup.Dimension dimension : SalesRollup.Dimension.values()) {
+                String bucket = BUCKET_SQL.get(granularity);
+                String key = KEY_SQL.get(dimension);
+                String groupBy = dimension == SalesRollup.Dimension.TOTAL ? bucket : bucket + ", " + key;
+                rows += jdbcTemplate.update(
+                        "INSERT INTO sales_rollups (granularity, bucket_start, dimension, dimension_key, units, revenue, order_count) "
+                        + "SELECT * FROM (SELECT '" + granularity + "' AS day_granularity, " + bucket + " AS day_bucket, '"
+                        + dimension + "' AS day_dimension, " + key + " AS day_key, "
+                        + "SUM(oi.quantity) AS day_units, SUM(oi.quantity * oi.price_at_time) AS day_revenue, "
+                        + "COUNT(DISTINCT o.id) AS day_orders "
+                        + "FROM orders o JOIN order_items oi ON oi.order_id = o.id JOIN products p ON p.id = oi.product_id "
+                        + "WHERE o.order_date >= ? AND o.order_date < ? AND o.order_status <> ? "
+                        + "GROUP BY " + groupBy + ") AS day_rollups "
+                        + "ON DUPLICATE KEY UPDATE units = day_rollups.day_units, revenue = day_rollups.day_revenue, "
+                        + "order_count = day_rollups.day_orders",
+                        start, end, Order.OrderStatus.CANCELLED.name());
+            }
+        }
+        // Buckets and keys with no live orders left, e.g. every order in them was cancelled
+        jdbcTemplate.update("DELETE FROM sales_rollups WHERE bucket_start >= ? AND bucket_start < ? AND order_count = 0",
+                start, end);
+        return rows;
+    }
+
+    private LocalDate dateOf(String sql) {
+        LocalDateTime time = jdbcTemplate.queryForObject(sql, LocalDateTime.class);
+        return time != null ? time.toLocalDate() : null;
+    }
+
+    private List<Line> loadLines(Collection<Long> orderIds) {
+        if (orderIds.isEmpty()) {
+            return List.of();
+        }
+        List<Line> lines = new ArrayList<>();
+        for (Object[] row : orderItemRepository.findSalesLinesByOrderIds(orderIds)) {
+            lines.add(new Line((Long) row[0], (LocalDateTime) row[1], (Long) row[2], (String) row[3],
+                    (Integer) row[4], (BigDecimal) row[5]));
+        }
+        return lines;
+    }
+
+    // Folds lines into one delta per bucket and key, then upserts them in key order so
+    // concurrent checkouts touching the same rows lock them in the same order
+    private void apply(List<Line> lines, int sign) {
+        if (lines.isEmpty()) {
+            return;
+        }
+        Map<Key, Delta> deltas = new TreeMap<>(Key.ORDER);
+        Set<String> countedOrders = new HashSet<>();
+        for (Line line : lines) {
+            for (SalesRollup.Granularity granularity : SalesRollup.Granularity.values()) {
+                LocalDateTime bucket = granularity.bucketOf(line.orderDate);
+                add(deltas, countedOrders, new Key(granularity, bucket, SalesRollup.Dimension.TOTAL, SalesRollup.TOTAL_KEY), line, sign);
+                add(deltas, countedOrders, new Key(granularity, bucket, SalesRollup.Dimension.PRODUCT, line.productId.toString()), line, sign);
+                add(deltas, countedOrders, new Key(granularity, bucket, SalesRollup.Dimension.CATEGORY, line.category), line, sign);
+            }
+        }
+
+        List<Object[]> batch = new ArrayList<>(deltas.size());
+        deltas.forEach((key, delta) -> batch.add(new Object[] {
+                key.granularity.name(), Timestamp.valueOf(key.bucketStart), key.dimension.name(), key.dimensionKey,
+                delta.units, delta.revenue, delta.orders}));
+        jdbcTemplate.batchUpdate(UPSERT_SQL, batch);
+    }
+
+    private static void add(Map<Key, Delta> deltas, Set<String> countedOrders, Key key, Line line, int sign) {
+        Delta delta = deltas.computeIfAbsent(key, k -> new Delta());
+        delta.units += (long) sign * line.quantity;
+        delta.revenue = delta.revenue.add(line.price.multiply(BigDecimal.valueOf((long) sign * line.quantity)));
+        // An order counts once per bucket and key, however many of its lines fall there
+        if (countedOrders.add(line.orderId + "|" + key)) {
+            delta.orders += sign;
+        }
+    }
+
+    private static final class Line {
+        private final Long orderId;
+        private final LocalDateTime orderDate;
+        private final Long productId;
+        private final String category;
+        private final int quantity;
+        private final BigDecimal price;
+
+        private Line(Long orderId, LocalDateTime orderDate, Long productId, String category, int quantity, BigDecimal price) {
+            this.orderId = orderId;
+            this.orderDate = orderDate;
+            this.productId = productId;
+            this.category = category;
+            this.quantity = quantity;
+            this.price = price;
+        }
+    }
+
+    private static final class Key {
+        private static final Comparator<Key> ORDER = Comparator
+                .comparing((Key key) -> key.granularity)
+                .thenComparing(key -> key.dimension)
+                .thenComparing(key -> key.dimensionKey)
+                .thenComparing(key -> key.bucketStart);
+
+        private final SalesRollup.Granularity granularity;
+        private final LocalDateTime bucketStart;
+        private final SalesRollup.Dimension dimension;
+        private final String dimensionKey;
+
+        private Key(SalesRollup.Granularity granularity, LocalDateTime bucketStart,
+                    SalesRollup.Dimension dimension, String dimensionKey) {
+            this.granularity = granularity;
+            this.bucketStart = bucketStart;
+            this.dimension = dimension;
+            this.dimensionKey = dimensionKey;
+        }
+
+        @Override
+        public String toString() {
+            return granularity + "|" + bucketStart + "|" + dimension + "|" + dimensionKey;
+        }
+    }
+
+    private static final class Delta {
+        private long units;
+        private BigDecimal revenue = BigDecimal.ZERO;
+        private long orders;
+    }
+}
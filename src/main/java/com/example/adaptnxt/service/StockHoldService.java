@@ -0,0 +1,290 @@
+package com.example.adaptnxt.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import jakarta.annotation.PostConstruct;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Time-bounded stock holds for cart lines. Adding or changing a cart line
+ * holds that quantity for the cart, other carts see it as unavailable, and
+ * the hold lapses after a TTL unless cart activity renews it.
+ *
+ * Expiry runs on a hashed timing wheel: each hold sits in the slot of its
+ * deadline and every tick only drains the current slot, so the cost is
+ * proportional to the holds actually due rather than to all active holds.
+ * Renewing just moves the deadline; when the old slot fires the hold is
+ * re-slotted instead of expired. Holds live in memory only and are soft:
+ * checkout still validates stock, so a lost hold can never oversell.
+ */
+@Component
+public class StockHoldService {
+
+    private static final Logger log = LoggerFactory.getLogger(StockHoldService.class);
+
+    private final Map<HoldKey, Hold> holds = new ConcurrentHashMap<>();
+
+    // productId -> units held across all carts
+    private final Map<Long, AtomicInteger> heldByProduct = new ConcurrentHashMap<>();
+
+    // cartId -> productIds held by that cart
+    private final Map<Long, Set<Long>> productsByCart = new ConcurrentHashMap<>();
+
+    private final AtomicLong expired = new AtomicLong();
+
+    @Value("${cart.holds.enabled:true}")
+    private boolean enabled;
+
+    @Value("${cart.holds.ttl-seconds:900}")
+    private long ttlSeconds;
+
+    @Value("${cart.holds.tick-ms:1000}")
+    private long tickMillis;
+
+    @Value("${cart.holds.wheel-size:512}")
+    private int wheelSize;
+
+    private List<Queue<Hold>> wheel;
+    private long startMillis;
+    private volatile long processedTick;
+
+    @PostConstruct
+    void initWheel() {
+        int size = Integer.highestOneBit(Math.max(wheelSize, 2) - 1) << 1;
+        List<Queue<Hold>> slots = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            slots.add(new ConcurrentLinkedQueue<>());
+        }
+        wheel = slots;
+        startMillis = System.currentTimeMillis();
+        processedTick = 0;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Sets the quantity the cart holds for a product, renewing the TTL.
+     * Returns false, leaving any existing hold unchanged, when the requested
+     * quantity is more than the stock not already held by other carts.
+     */
+    public boolean hold(Long cartId, Long productId, int quantity, int availableStock) {
+        if (!enabled) {
+            return availableStock >= quantity;
+        }
+        if (quantity <= 0) {
+            release(cartId, productId);
+            return true;
+        }
+        int previous = applyHold(cartId, productId, quantity, availableStock);
+        if (previous < 0) {
+            return false;
+        }
+        restoreOnRollback(cartId, productId, previous);
+        return true;
+    }
+
+    // Returns the previously held quantity, or -1 if the new quantity does not fit
+    private int applyHold(Long cartId, Long productId, int quantity, int availableStock) {
+        HoldKey key = new HoldKey(cartId, productId);
+        AtomicInteger held = heldByProduct.computeIfAbsent(productId, id -> new AtomicInteger());
+        while (true) {
+            Hold hold = holds.computeIfAbsent(key, Hold::new);
+            synchronized (hold) {
+                if (hold.released) {
+                    // Lost a race with expiry; the map now holds (or will hold) a fresh entry
+                    holds.remove(key, hold);
+                    continue;
+                }
+                int previous = hold.quantity;
+                int delta = quantity - previous;
+                while (true) {
+                    int current = held.get();
+                    if (delta > 0 && current - previous + quantity > availableStock) {
+                        if (previous == 0) {
+                            hold.released = true;
+                            holds.remove(key, hold);
+                        }
+                        return -1;
+                    }
+                    if (held.compareAndSet(current, current + delta)) {
+                        break;
+                    }
+                }
+                hold.quantity = quantity;
+                hold.deadline = System.currentTimeMillis() + ttlSeconds * 1000;
+                if (!hold.scheduled) {
+                    schedule(hold);
+                }
+                productsByCart.computeIfAbsent(cartId, id -> ConcurrentHashMap.newKeySet()).add(productId);
+                return previous;
+            }
+        }
+    }
+
+    // Units of a product held by carts other than the given one
+    public int getHeldByOthers(Long productId, Long cartId) {
+        if (!enabled) {
+            return 0;
+        }
+        AtomicInteger held = heldByProduct.get(productId);
+        int total = held == null ? 0 : held.get();
+        Hold own = cartId == null ? null : holds.get(new HoldKey(cartId, productId));
+        return total - (own == null ? 0 : own.quantity);
+    }
+
+    // Pushes back the deadline of every hold in the cart
+    public void renewCart(Long cartId) {
+        Set<Long> productIds = productsByCart.get(cartId);
+        if (productIds == null) {
+            return;
+        }
+        long deadline = System.currentTimeMillis() + ttlSeconds * 1000;
+        for (Long productId : productIds) {
+            Hold hold = holds.get(new HoldKey(cartId, productId));
+            if (hold != null) {
+                hold.deadline = deadline;
+            }
+        }
+    }
+
+    public void release(Long cartId, Long productId) {
+        Hold hold = holds.get(new HoldKey(cartId, productId));
+        if (hold != null) {
+            releaseHold(hold);
+        }
+    }
+
+    public void releaseCart(Long cartId) {
+        Set<Long> productIds = productsByCart.remove(cartId);
+        if (productIds == null) {
+            return;
+        }
+        for (Long productId : productIds) {
+            release(cartId, productId);
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("activeHolds", holds.size());
+        stats.put("productsHeld", heldByProduct.size());
+        stats.put("expired", expired.get());
+        stats.put("ttlSeconds", ttlSeconds);
+        return stats;
+    }
+
+    @Scheduled(fixedRateString = "${cart.holds.tick-ms:1000}")
+    public void advance() {
+        if (!enabled) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        long currentTick = (now - startMillis) / tickMillis;
+        // Never sweep more than one full revolution; every slot is then visited once
+        long from = Math.max(processedTick + 1, currentTick - wheel.size() + 1);
+        for (long tick = from; tick <= currentTick; tick++) {
+            Queue<Hold> slot = wheel.get((int) (tick & (wheel.size() - 1)));
+            int due = slot.size();
+            for (int i = 0; i < due; i++) {
+                Hold hold = slot.poll();
+                if (hold == null) {
+                    break;
+                }
+                synchronized (hold) {
+                    hold.scheduled = false;
+                    if (hold.released) {
+                        continue;
+                    }
+                    if (hold.deadline > now) {
+                        schedule(hold);
+                        continue;
+                    }
+                }
+                releaseHold(hold);
+                expired.incrementAndGet();
+            }
+        }
+        processedTick = currentTick;
+    }
+
+    private void schedule(Hold hold) {
+        long tick = Math.max((hold.deadline - startMillis) / tickMillis, processedTick + 1);
+        hold.scheduled = true;
+        wheel.get((int) (tick & (wheel.size() - 1))).add(hold);
+    }
+
+    private void releaseHold(Hold hold) {
+        synchronized (hold) {
+            if (hold.released) {
+                return;
+            }
+            AtomicInteger held = heldByProduct.get(hold.key.productId());
+            if (held != null) {
+                held.addAndGet(-hold.quantity);
+            }
+            hold.quantity = 0;
+            hold.released = true;
+            holds.remove(hold.key, hold);
+        }
+        Set<Long> productIds = productsByCart.get(hold.key.cartId());
+        if (productIds != null) {
+            productIds.remove(hold.key.productId());
+            if (productIds.isEmpty()) {
+                productsByCart.remove(hold.key.cartId(), productIds);
+            }
+        }
+    }
+
+    // If the cart write that placed the hold rolls back, put the hold back where it was
+    private void restoreOnRollback(Long cartId, Long productId, int previousQuantity) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED) {
+                    return;
+                }
+                if (previousQuantity == 0) {
+                    release(cartId, productId);
+                } else if (applyHold(cartId, productId, previousQuantity, Integer.MAX_VALUE) < 0) {
+                    log.warn("Could not restore stock hold for cart {} product {}", cartId, productId);
+                }
+            }
+        });
+    }
+
+    private record HoldKey(Long cartId, Long productId) {
+    }
+
+    private static final class Hold {
+        private final HoldKey key;
+        private volatile int quantity;
+        private volatile long deadline;
+        private boolean scheduled;
+        private boolean released;
+
+        private Hold(HoldKey key) {
+            this.key = key;
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package com.example.adaptnxt.service;
+
+import com.example.adaptnxt.models.Product;
+import com.example.adaptnxt.models.ProductStockShard;
+import com.example.adaptnxt.repository.ProductRepository;
+import com.example.adaptnxt.repository.ProductStockShardRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.PersistenceContext;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Hot-SKU mode: a product's stock is split across N product_stock_shards
+ * rows and each checkout decrements one randomly chosen shard that can
+ * cover it, so concurrent buyers of the same product mostly lock different
+ * rows. Availability is the sum of the shards; products.stock is refreshed
+ * from that sum on a schedule so listings and facets stay close.
+ *
+ * Sharding and the in-memory inventory ledger are alternatives: the ledger
+ * already keeps hot products off the database, so sharding is refused while
+ * it is enabled.
+ */
+@Component
+public class StockShardService {
+
+    private static final Logger log = LoggerFactory.getLogger(StockShardService.class);
+
+    @Autowired
+    private ProductStockShardRepository shardRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private InventoryLedger inventoryLedger;
+
+    @Autowired
+    private ProductCache productCache;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${product.stock-shards.max:64}")
+    private int maxShards;
+
+    public static boolean isSharded(Product product) {
+        return product.getStockShards() != null && product.getStockShards() > 0;
+    }
+
+    // Sum of the shards; exact, unlike products.stock of a sharded product
+    public int getStock(Long productId) {
+        return (int) shardRepository.sumStock(productId);
+    }
+
+    /**
+     * Takes the quantity from one shard that can cover it, starting from a
+     * random one. If no single shard has enough the shards are locked and
+     * drained in order, which is slower but still exact.
+     */
+    @Transactional
+    public void decrement(Long productId, int quantity) {
+        List<Integer> candidates = new ArrayList<>(shardRepository.findShardNosWithStock(productId, quantity));
+        Collections.shuffle(candidates, ThreadLocalRandom.current());
+        for (Integer shardNo : candidates) {
+            if (shardRepository.decrementShard(productId, shardNo, quantity) == 1) {
+                return;
+            }
+        }
+
+        List<ProductStockShard> shards = shardRepository.findAllForUpdate(productId);
+        if (shards.isEmpty() && productRepository.decrementStock(productId, quantity) == 1) {
+            // Sharding was switched off since the caller looked, so the stock is back in the product row
+            return;
+        }
+        int total = shards.stream().mapToInt(ProductStockShard::getStock).sum();
+        if (total < quantity) {
+            String name = productRepository.findById(productId).map(Product::getName).orElse(String.valueOf(productId));
+            throw new RuntimeException("Insufficient stock for product: " + name);
+        }
+        int remaining = quantity;
+        for (ProductStockShard shard : shards) {
+            int taken = Math.min(remaining, shard.getStock());
+            shard.setStock(shard.getStock() - taken);
+            remaining -= taken;
+            if (remaining == 0) {
+                break;
+            }
+        }
+    }
+
+    // Moves the product's stock into shardCount shards, or re-splits it if it is already sharded
+    @Transactional
+    public Product enable(Long productId, int shardCount) {
+        if (inventoryLedger.isEnabled()) {
+            throw new IllegalStateException("Stock sharding is not available while the inventory ledger is enabled");
+        }
+        if (shardCount < 2 || shardCount > maxShards) {
+            throw new IllegalArgumentException("Shard count must be between 2 and " + maxShards);
+        }
+        Product product = lockProduct(productId);
+        int total = isSharded(product) ? drainShards(productId) : product.getStock();
+        List<ProductStockShard> shards = new ArrayList<>(shardCount);
+        for (int i = 0; i < shardCount; i++) {
+            shards.add(new ProductStockShard(productId, i, split(total, shardCount, i)));
+        }
+        shardRepository.saveAll(shards);
+        product.setStockShards(shardCount);
+        product.setStock(total);
+        return product;
+    }
+
+    // Folds the shards back into products.stock
+    @Transactional
+    public Product disable(Long productId) {
+        Product product = lockProduct(productId);
+        if (isSharded(product)) {
+            product.setStock(drainShards(productId));
+            product.setStockShards(0);
+        }
+        return product;
+    }
+
+    // Spreads an absolute stock level set by an admin evenly over the existing shards
+    @Transactional
+    public void redistribute(Long productId, int total) {
+        List<ProductStockShard> shards = shardRepository.findAllForUpdate(productId);
+        for (int i = 0; i < shards.size(); i++) {
+            shards.get(i).setStock(split(total, shards.size(), i));
+        }
+    }
+
+    // Finds the sharded products through the stock_shards index and updates only their rows, by primary key
+    @Scheduled(fixedDelayString = "${product.stock-shards.rollup-interval-ms:5000}")
+    public void rollUp() {
+        List<Long> shardedIds = productRepository.findAllShardedIds();
+        if (shardedIds.isEmpty()) {
+            return;
+        }
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        Integer refreshed = transaction.execute(status -> productRepository.rollUpShardedStock(shardedIds));
+        if (refreshed != null && refreshed > 0) {
+            shardedIds.forEach(productCache::invalidate);
+            log.debug("Refreshed stock of {} sharded products", refreshed);
+        }
+    }
+
+    private Product lockProduct(Long productId) {
+        Product product = entityManager.find(Product.class, productId, LockModeType.PESSIMISTIC_WRITE);
+        if (product == null) {
+            throw new RuntimeException("Product not found with id: " + productId);
+        }
+        return product;
+    }
+
+    private int drainShards(Long productId) {
+        List<ProductStockShard> shards = shardRepository.findAllForUpdate(productId);
+        int total = shards.stream().mapToInt(ProductStockShard::getStock).sum();
+        shards.forEach(entityManager::detach);
+        shardRepository.deleteByProductIdInBulk(productId);
+        return total;
+    }
+
+    private static int split(int total, int shardCount, int shardNo) {
+        return total / shardCount + (shardNo < total % shardCount ? 1 : 0);
+    }
+}
@@ -0,0 +1,725 @@
+package com.example.adaptnxt.service;
+
+import com.example.adaptnxt.models.Cart;
+import com.example.adaptnxt.models.CartItem;
+import com.example.adaptnxt.models.Product;
+import com.example.adaptnxt.models.User;
+import com.example.adaptnxt.repository.CartItemRepository;
+import com.example.adaptnxt.repository.CartRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import jakarta.annotation.PreDestroy;
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Write-behind cart store. Carts are loaded into memory on first use and
+ * changed there; a scheduled flush writes each changed cart's final state to
+ * carts/cart_items in one transaction, so a burst of quantity changes costs
+ * one write per line instead of one transaction per click. Checkout flushes
+ * the cart first so the order is built from persisted lines.
+ *
+ * Inside a transaction, changes go to a private view of the cart and reach
+ * the shared copy only when that transaction commits, so a rollback leaves
+ * memory untouched. A new line's row is inserted right away, in the caller's
+ * transaction, so every line is handed out with its real id.
+ *
+ * Carts live in one JVM, so this store must only be enabled when a single
+ * instance serves cart traffic. Changes accepted since the last flush are
+ * lost if the process dies.
+ */
+@Component
+@ConditionalOnProperty(name = "cart.store.type", havingValue = "memory")
+public class WriteBehindCartStore implements CartStore {
+
+    private static final Logger log = LoggerFactory.getLogger(WriteBehindCartStore.class);
+
+    private final Map<Long, CartState> cartsByUser = new ConcurrentHashMap<>();
+
+    private final Map<Long, Long> userIdByCartId = new ConcurrentHashMap<>();
+
+    // Line id -> cart id
+    private final Map<Long, Long> cartIdByItemId = new ConcurrentHashMap<>();
+
+    // Key for the current transaction's uncommitted cart views
+    private final Object pendingKey = new Object();
+
+    private final AtomicLong mutations = new AtomicLong();
+    private final AtomicLong flushes = new AtomicLong();
+    private final AtomicLong rowsWritten = new AtomicLong();
+    private final AtomicLong flushFailures = new AtomicLong();
+
+    @Autowired
+    private CartRepository cartRepository;
+
+    @Autowired
+    private CartItemRepository cartItemRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${cart.store.idle-evict-seconds:1800}")
+    private long idleEvictSeconds;
+
+    @Override
+    public Cart getOrCreateCart(Long userId) {
+        CartState state = visible(load(userId, true));
+        synchronized (state) {
+            state.touch();
+            return state.toCart();
+        }
+    }
+
+    // Carts handed out always carry their lines
+    @Override
+    public Cart getOrCreateCartWithItems(Long userId) {
+        return getOrCreateCart(userId);
+    }
+
+    @Override
+    public Optional<Cart> findCart(Long userId) {
+        CartState state = visible(load(userId, false));
+        if (state == null) {
+            return Optional.empty();
+        }
+        synchronized (state) {
+            state.touch();
+            return Optional.of(state.toCart());
+        }
+    }
+
+    @Override
+    public List<CartItem> getItems(Long cartId) {
+        CartState state = visible(stateForCart(cartId));
+        if (state == null) {
+            return List.of();
+        }
+        synchronized (state) {
+            return state.toItems();
+        }
+    }
+
+    @Override
+    public Optional<CartItem> findItem(Long cartItemId) {
+        Long cartId = cartIdByItemId.get(cartItemId);
+        if (cartId == null) {
+            cartId = readOnly(() -> cartItemRepository.findCartIdById(cartItemId).orElse(null));
+        }
+        CartState state = cartId == null ? null : visible(stateForCart(cartId));
+        if (state == null) {
+            return Optional.empty();
+        }
+        synchronized (state) {
+            Line line = state.lineById(cartItemId);
+            return line == null ? Optional.empty() : Optional.of(state.toItem(line));
+        }
+    }
+
+    @Override
+    public Optional<CartItem> findItem(Long cartId, Long productId) {
+        CartState state = visible(stateForCart(cartId));
+        if (state == null) {
+            return Optional.empty();
+        }
+        synchronized (state) {
+            Line line = state.lines.get(productId);
+            return line == null ? Optional.empty() : Optional.of(state.toItem(line));
+        }
+    }
+
+    @Override
+    public CartItem addItem(Cart cart, Product product, int quantity) {
+        Long cartId = cart.getId();
+        CartState current = visible(stateForCart(cartId));
+        if (current == null) {
+            throw new RuntimeException("Cart not found with id: " + cartId);
+        }
+        boolean hasLine;
+        synchronized (current) {
+            hasLine = current.lines.containsKey(product.getId());
+        }
+        Long rowId = null;
+        boolean inserted = false;
+        if (!hasLine) {
+            try {
+                rowId = insertLine(cartId, product, quantity);
+                inserted = true;
+            } catch (DuplicateKeyException e) {
+                // The row is still there: removed but not flushed yet, or just added by a concurrent request
+                rowId = cartItemRepository.findByCartIdAndProductId(cartId, product.getId())
+                        .map(CartItem::getId)
+                        .orElseThrow(() -> e);
+            }
+        }
+        Long newLineId = rowId;
+        boolean rowWritten = inserted;
+        return mutate(cartId, state -> {
+            Line line = state.lines.get(product.getId());
+            if (line == null) {
+                if (newLineId == null) {
+                    // Removed by a request that committed first; the removal wins
+                    log.debug("Line for product {} left cart {} before this add committed", product.getId(), cartId);
+                    return null;
+                }
+                line = new Line(newLineId, product, quantity, product.getPrice());
+                line.dirty = !rowWritten;
+                state.lines.put(product.getId(), line);
+                state.removedIds.remove(newLineId);
+                if (!state.view) {
+                    cartIdByItemId.put(newLineId, state.cartId);
+                }
+                return state.toItem(line);
+            }
+            line.quantity += quantity;
+            line.dirty = true;
+            return state.toItem(line);
+        });
+    }
+
+    @Override
+    public CartItem updateQuantity(CartItem item, int quantity) {
+        return mutate(item.getCart().getId(), state -> {
+            Line line = state.lineById(item.getId());
+            if (line == null) {
+                throw new RuntimeException("Cart item not found with id: " + item.getId());
+            }
+            line.quantity = quantity;
+            line.dirty = true;
+            return state.toItem(line);
+        });
+    }
+
+    @Override
+    public void removeItem(CartItem item) {
+        mutate(item.getCart().getId(), state -> {
+            Line line = state.lineById(item.getId());
+            if (line != null) {
+                state.lines.remove(line.product.getId());
+                forget(state, line);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Clears the cart in the caller's transaction rather than behind it, so a
+     * checkout commits the order and the emptied cart together. Flushes of
+     * this cart wait until that transaction ends, and memory is emptied only
+     * once it commits.
+     */
+    @Override
+    public void clear(Long cartId) {
+        CartState state = stateForCart(cartId);
+        if (state == null) {
+            return;
+        }
+        synchronized (state) {
+            state.clearsInFlight++;
+        }
+        try {
+            // Waits out a flush already writing, without holding the cart while the rows go
+            synchronized (state.flushLock) {
+                cartItemRepository.deleteAllByCartIdInBulk(cartId);
+                cartRepository.resetTotals(cartId);
+            }
+        } catch (RuntimeException e) {
+            synchronized (state) {
+                state.clearsInFlight--;
+            }
+            throw e;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            finishClear(state, true);
+            return;
+        }
+        Map<Long, PendingCart> pending = pendingCarts(false);
+        if (pending != null) {
+            // Changes this transaction made before the clear are gone with the rows
+            pending.remove(cartId);
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                finishClear(state, status == STATUS_COMMITTED);
+            }
+        });
+    }
+
+    private void finishClear(CartState state, boolean committed) {
+        synchronized (state) {
+            state.clearsInFlight--;
+            if (committed) {
+                state.lines.values().forEach(line -> cartIdByItemId.remove(line.id));
+                state.lines.clear();
+                state.removedIds.clear();
+                state.dirty = false;
+                state.touch();
+            }
+        }
+    }
+
+    @Override
+    public BigDecimal getSubtotal(Long cartId) {
+        CartState state = visible(stateForCart(cartId));
+        if (state == null) {
+            return BigDecimal.ZERO;
+        }
+        synchronized (state) {
+            return state.subtotal();
+        }
+    }
+
+    @Override
+    public int getItemCount(Long cartId) {
+        CartState state = visible(stateForCart(cartId));
+        if (state == null) {
+            return 0;
+        }
+        synchronized (state) {
+            return state.lines.size();
+        }
+    }
+
+    @Override
+    public void flush(Long cartId) {
+        Long userId = userIdByCartId.get(cartId);
+        CartState state = userId == null ? null : cartsByUser.get(userId);
+        if (state != null) {
+            flushCart(state);
+        }
+    }
+
+    @Override
+    public boolean isInMemory(Long cartId) {
+        return userIdByCartId.containsKey(cartId);
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        long dirty = cartsByUser.values().stream().filter(state -> state.dirty).count();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("type", "memory");
+        stats.put("cartsInMemory", cartsByUser.size());
+        stats.put("dirtyCarts", dirty);
+        stats.put("mutations", mutations.get());
+        stats.put("flushes", flushes.get());
+        stats.put("rowsWritten", rowsWritten.get());
+        stats.put("flushFailures", flushFailures.get());
+        return stats;
+    }
+
+    // Writes every changed cart, then drops clean carts nobody has touched for a while
+    @Scheduled(fixedDelayString = "${cart.store.flush-interval-ms:2000}")
+    public void flushAll() {
+        long idleBefore = System.currentTimeMillis() - idleEvictSeconds * 1000;
+        for (CartState state : cartsByUser.values()) {
+            try {
+                flushCart(state);
+            } catch (RuntimeException e) {
+                log.error("Could not flush cart {}, will retry", state.cartId, e);
+            }
+            synchronized (state) {
+                if (!state.dirty && state.lastAccess < idleBefore) {
+                    evict(state);
+                }
+            }
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flushAll();
+    }
+
+    // Inside a transaction the change goes to its view now and to the shared cart on commit
+    private <T> T mutate(Long cartId, Function<CartState, T> change) {
+        Map<Long, PendingCart> pending = pendingCarts(true);
+        if (pending == null) {
+            return apply(cartId, change);
+        }
+        PendingCart cart = pending.get(cartId);
+        if (cart == null) {
+            CartState state = stateForCart(cartId);
+            if (state == null) {
+                throw new RuntimeException("Cart not found with id: " + cartId);
+            }
+            synchronized (state) {
+                cart = new PendingCart(state.view());
+            }
+            pending.put(cartId, cart);
+        }
+        T result = change.apply(cart.view);
+        cart.view.dirty = true;
+        cart.changes.add(change);
+        return result;
+    }
+
+    private <T> T apply(Long cartId, Function<CartState, T> change) {
+        while (true) {
+            CartState state = stateForCart(cartId);
+            if (state == null) {
+                throw new RuntimeException("Cart not found with id: " + cartId);
+            }
+            synchronized (state) {
+                if (state.evicted) {
+                    continue;
+                }
+                T result = change.apply(state);
+                state.dirty = true;
+                state.touch();
+                mutations.incrementAndGet();
+                return result;
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<Long, PendingCart> pendingCarts(boolean create) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return null;
+        }
+        Map<Long, PendingCart> pending = (Map<Long, PendingCart>) TransactionSynchronizationManager.getResource(pendingKey);
+        if (pending != null || !create) {
+            return pending;
+        }
+        Map<Long, PendingCart> created = new LinkedHashMap<>();
+        TransactionSynchronizationManager.bindResource(pendingKey, created);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                created.forEach((cartId, cart) -> {
+                    for (Function<CartState, ?> change : cart.changes) {
+                        try {
+                            apply(cartId, change);
+                        } catch (RuntimeException e) {
+                            log.warn("Could not apply a committed change to cart {}", cartId, e);
+                        }
+                    }
+                });
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(pendingKey);
+            }
+        });
+        return created;
+    }
+
+    // The cart as the current transaction sees it
+    private CartState visible(CartState state) {
+        if (state == null) {
+            return null;
+        }
+        Map<Long, PendingCart> pending = pendingCarts(false);
+        PendingCart cart = pending == null ? null : pending.get(state.cartId);
+        return cart == null ? state : cart.view;
+    }
+
+    // Inserts a new line's row in the caller's transaction and returns its id
+    private Long insertLine(Long cartId, Product product, int quantity) {
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.update(connection -> {
+            PreparedStatement statement = connection.prepareStatement(
+                    "INSERT INTO cart_items (cart_id, product_id, quantity, price_at_time) VALUES (?, ?, ?, ?)",
+                    Statement.RETURN_GENERATED_KEYS);
+            statement.setLong(1, cartId);
+            statement.setLong(2, product.getId());
+            statement.setInt(3, quantity);
+            statement.setBigDecimal(4, product.getPrice());
+            return statement;
+        }, keyHolder);
+        return keyHolder.getKey().longValue();
+    }
+
+    private CartState stateForCart(Long cartId) {
+        Long userId = userIdByCartId.get(cartId);
+        if (userId == null) {
+            userId = readOnly(() -> cartRepository.findUserIdById(cartId).orElse(null));
+            if (userId == null) {
+                return null;
+            }
+        }
+        return load(userId, false);
+    }
+
+    // Loads (or creates) the user's cart in its own transaction, so memory only ever holds committed rows
+    private CartState load(Long userId, boolean create) {
+        CartState state = cartsByUser.get(userId);
+        if (state != null) {
+            return state;
+        }
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        CartState loaded = transaction.execute(status -> {
+            Optional<Cart> cart = cartRepository.findByUserId(userId);
+            if (cart.isEmpty() && !create) {
+                return null;
+            }
+            Cart row = cart.orElseGet(() -> {
+                cartRepository.insertIfAbsent(userId);
+                return cartRepository.findByUserId(userId).orElseThrow();
+            });
+            CartState fresh = new CartState(row.getId(), userId, row.getCreatedAt());
+            for (CartItem item : cartItemRepository.findByCartIdWithProduct(row.getId())) {
+                fresh.lines.put(item.getProduct().getId(),
+                        new Line(item.getId(), item.getProduct(), item.getQuantity(), item.getPriceAtTime()));
+            }
+            return fresh;
+        });
+        if (loaded == null) {
+            return null;
+        }
+        CartState existing = cartsByUser.putIfAbsent(userId, loaded);
+        if (existing != null) {
+            return existing;
+        }
+        userIdByCartId.put(loaded.cartId, userId);
+        loaded.lines.values().forEach(line -> cartIdByItemId.put(line.id, loaded.cartId));
+        return loaded;
+    }
+
+    private void flushCart(CartState state) {
+        synchronized (state.flushLock) {
+            List<Line> lines;
+            List<Line> changed = new ArrayList<>();
+            List<Long> removed;
+            synchronized (state) {
+                if (!state.dirty || state.clearsInFlight > 0) {
+                    return;
+                }
+                lines = new ArrayList<>(state.lines.size());
+                for (Line line : state.lines.values()) {
+                    Line copy = line.copy();
+                    lines.add(copy);
+                    if (line.dirty) {
+                        changed.add(copy);
+                        line.dirty = false;
+                    }
+                }
+                removed = new ArrayList<>(state.removedIds);
+                state.removedIds.clear();
+                state.dirty = false;
+            }
+
+            try {
+                TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+                transaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+                transaction.executeWithoutResult(status -> write(state.cartId, lines, changed, removed));
+            } catch (RuntimeException e) {
+                flushFailures.incrementAndGet();
+                synchronized (state) {
+                    // Put the work back so the next flush retries it
+                    for (Line copy : changed) {
+                        Line line = state.lines.get(copy.product.getId());
+                        if (line != null) {
+                            line.dirty = true;
+                        }
+                    }
+                    state.removedIds.addAll(removed);
+                    state.dirty = true;
+                }
+                throw e;
+            }
+
+            flushes.incrementAndGet();
+            rowsWritten.addAndGet(changed.size() + removed.size());
+        }
+    }
+
+    private void write(Long cartId, List<Line> lines, List<Line> changed, List<Long> removed) {
+        if (!removed.isEmpty()) {
+            cartItemRepository.deleteAllByIdInBatch(removed);
+        }
+        if (!changed.isEmpty()) {
+            List<Object[]> updates = new ArrayList<>(changed.size());
+            changed.forEach(line -> updates.add(new Object[] {line.quantity, line.id}));
+            int[] counts = jdbcTemplate.batchUpdate("UPDATE cart_items SET quantity = ? WHERE id = ?", updates);
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] == 0) {
+                    // A re-added line whose old row an earlier flush deleted; put it back under the same id
+                    Line line = changed.get(i);
+                    jdbcTemplate.update(
+                            "INSERT INTO cart_items (id, cart_id, product_id, quantity, price_at_time) VALUES (?, ?, ?, ?, ?)",
+                            line.id, cartId, line.product.getId(), line.quantity, line.priceAtTime);
+                }
+            }
+        }
+        BigDecimal subtotal = lines.stream()
+                .map(line -> line.priceAtTime.multiply(BigDecimal.valueOf(line.quantity)))
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        cartRepository.setTotals(cartId, subtotal, lines.size());
+    }
+
+    private void forget(CartState state, Line line) {
+        state.removedIds.add(line.id);
+        if (!state.view) {
+            cartIdByItemId.remove(line.id);
+        }
+    }
+
+    private void evict(CartState state) {
+        synchronized (state) {
+            state.evicted = true;
+            cartsByUser.remove(state.userId, state);
+            userIdByCartId.remove(state.cartId, state.userId);
+            state.lines.values().forEach(line -> cartIdByItemId.remove(line.id));
+        }
+    }
+
+    private <T> T readOnly(Supplier<T> query) {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.setReadOnly(true);
+        return transaction.execute(status -> query.get());
+    }
+
+    private static final class CartState {
+        private final Long cartId;
+        private final Long userId;
+        private final LocalDateTime createdAt;
+        // productId -> line, in the order lines were added
+        private final Map<Long, Line> lines = new LinkedHashMap<>();
+        // Persisted line ids whose rows still need deleting
+        private final List<Long> removedIds = new ArrayList<>();
+        private final Object flushLock = new Object();
+        // A transaction's private copy rather than the shared cart
+        private final boolean view;
+        private volatile boolean dirty;
+        private boolean evicted;
+        // Clears whose transaction has not finished yet
+        private int clearsInFlight;
+        private long lastAccess = System.currentTimeMillis();
+
+        private CartState(Long cartId, Long userId, LocalDateTime createdAt) {
+            this(cartId, userId, createdAt, false);
+        }
+
+        private CartState(Long cartId, Long userId, LocalDateTime createdAt, boolean view) {
+            this.cartId = cartId;
+            this.userId = userId;
+            this.createdAt = createdAt;
+            this.view = view;
+        }
+
+        CartState view() {
+            CartState copy = new CartState(cartId, userId, createdAt, true);
+            lines.forEach((productId, line) -> copy.lines.put(productId, line.copy()));
+            copy.removedIds.addAll(removedIds);
+            copy.dirty = dirty;
+            return copy;
+        }
+
+        void touch() {
+            lastAccess = System.currentTimeMillis();
+        }
+
+        Line lineById(Long itemId) {
+            for (Line line : lines.values()) {
+                if (itemId.equals(line.id)) {
+                    return line;
+                }
+            }
+            return null;
+        }
+
+        BigDecimal subtotal() {
+            return lines.values().stream()
+                    .map(line -> line.priceAtTime.multiply(BigDecimal.valueOf(line.quantity)))
+                    .reduce(BigDecimal.ZERO, BigDecimal::add);
+        }
+
+        Cart toCart() {
+            Cart cart = new Cart();
+            cart.setId(cartId);
+            User user = new User();
+            user.setId(userId);
+            cart.setUser(user);
+            cart.setCreatedAt(createdAt);
+            cart.setUpdatedAt(LocalDateTime.now());
+            cart.setCartItems(toItems(cart));
+            cart.setSubtotal(subtotal());
+            cart.setItemCount(lines.size());
+            return cart;
+        }
+
+        List<CartItem> toItems() {
+            Cart cart = new Cart();
+            cart.setId(cartId);
+            return toItems(cart);
+        }
+
+        private List<CartItem> toItems(Cart cart) {
+            List<CartItem> items = new ArrayList<>(lines.size());
+            for (Line line : lines.values()) {
+                items.add(new CartItem(line.id, cart, line.product, line.quantity, line.priceAtTime));
+            }
+            return items;
+        }
+
+        CartItem toItem(Line line) {
+            Cart cart = new Cart();
+            cart.setId(cartId);
+            return new CartItem(line.id, cart, line.product, line.quantity, line.priceAtTime);
+        }
+    }
+
+    // Changes a transaction made to one cart, applied to the shared cart when it commits
+    private static final class PendingCart {
+        private final CartState view;
+        private final List<Function<CartState, ?>> changes = new ArrayList<>();
+
+        private PendingCart(CartState view) {
+            this.view = view;
+        }
+    }
+
+    private static final class Line {
+        private final Long id;
+        private final Product product;
+        private int quantity;
+        private final BigDecimal priceAtTime;
+        private boolean dirty;
+
+        private Line(Long id, Product product, int quantity, BigDecimal priceAtTime) {
+            this.id = id;
+            this.product = product;
+            this.quantity = quantity;
+            this.priceAtTime = priceAtTime;
+        }
+
+        Line copy() {
+            Line copy = new Line(id, product, quantity, priceAtTime);
+            copy.dirty = dirty;
+            return copy;
+        }
+    }
+}
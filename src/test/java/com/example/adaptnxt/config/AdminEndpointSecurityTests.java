@@ -0,0 +1,29 @@
+package com.example.adaptnxt.config;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+// @PreAuthorize is not enforced, so admin endpoints under a permitAll path rely on their URL rule
+@SpringBootTest
+@AutoConfigureMockMvc
+class AdminEndpointSecurityTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    void asyncCheckoutStatsNeedAuthentication() throws Exception {
+        assertRefused("/api/orders/async/stats");
+    }
+
+    private void assertRefused(String path) throws Exception {
+        int status = mockMvc.perform(get(path)).andReturn().getResponse().getStatus();
+        assertTrue(status == 401 || status == 403, path + " answered " + status);
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.adaptnxt.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.example.adaptnxt.models.Cart;
+import com.example.adaptnxt.models.CartItem;
+import com.example.adaptnxt.models.Order;
+import com.example.adaptnxt.models.OrderItem;
+import com.example.adaptnxt.models.Product;
+import com.example.adaptnxt.models.User;
+import com.example.adaptnxt.service.CartService;
+import com.example.adaptnxt.service.OrderService;
+
+// Response shapes of the cart and order endpoints must load in a fixed number of statements
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@Transactional
+class FetchJoinQueryCountTests extends RepositoryTestSupport {
+
+    private static final int ORDERS = 3;
+    private static final int ITEMS_PER_ORDER = 4;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private CartService cartService;
+
+    private Statistics statistics;
+    private User user;
+    private Long orderId;
+
+    @BeforeEach
+    void setUp() {
+        user = user("fetch-join");
+
+        Cart cart = new Cart();
+        cart.setUser(user);
+        entityManager.persist(cart);
+
+        for (int o = 0; o < ORDERS; o++) {
+            Order order = new Order();
+            order.setUser(user);
+            order.setTotalAmount(BigDecimal.TEN);
+            order.setOrderStatus(Order.OrderStatus.PENDING);
+            order.setShippingAddress("1 Test Street");
+            entityManager.persist(order);
+            orderId = order.getId();
+            for (int i = 0; i < ITEMS_PER_ORDER; i++) {
+                Product product = product("Product " + o + "-" + i);
+                entityManager.persist(new OrderItem(null, order, product, 1, product.getPrice(), product.getCategory()));
+                if (o == 0) {
+                    entityManager.persist(new CartItem(null, cart, product, 1, product.getPrice()));
+                }
+            }
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        statistics = statistics();
+    }
+
+    @Test
+    void allOrdersLoadInOneStatement() {
+        List<Order> orders = orderService.getAllOrders();
+        orders.forEach(this::walk);
+
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void orderByIdLoadsInOneStatement() {
+        Order order = orderService.getOrderById(orderId).orElseThrow();
+        walk(order);
+
+        assertEquals(ITEMS_PER_ORDER, order.getOrderItems().size());
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void userOrdersLoadInOneStatement() {
+        List<Order> orders = orderService.getOrdersByUserId(user.getId());
+        orders.forEach(order -> order.getOrderItems().forEach(item -> item.getProduct().getName()));
+
+        assertEquals(ORDERS, orders.size());
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void cartLoadsInOneStatement() {
+        Cart cart = cartService.getOrCreateCart(user);
+        cart.getCartItems().forEach(item -> item.getProduct().getName());
+
+        assertEquals(ITEMS_PER_ORDER, cart.getCartItems().size());
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    // Touches everything OrderController puts in an order response
+    private void walk(Order order) {
+        order.getUser().getUsername();
+        order.getOrderItems().forEach(item -> item.getProduct().getDescription());
+    }
+}
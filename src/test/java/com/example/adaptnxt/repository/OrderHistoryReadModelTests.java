@@ -0,0 +1,136 @@
+package com.example.adaptnxt.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.example.adaptnxt.models.Cart;
+import com.example.adaptnxt.models.CartItem;
+import com.example.adaptnxt.models.Order;
+import com.example.adaptnxt.models.OrderHistoryEntry;
+import com.example.adaptnxt.models.OrderItem;
+import com.example.adaptnxt.models.Product;
+import com.example.adaptnxt.models.User;
+import com.example.adaptnxt.service.OrderHistoryProjector;
+import com.example.adaptnxt.service.OrderService;
+
+// A customer's order history is one range read of order_history, kept in step with order changes
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@Transactional
+class OrderHistoryReadModelTests extends RepositoryTestSupport {
+
+    private static final int ORDERS = 5;
+    private static final int ITEMS_PER_ORDER = 3;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private OrderHistoryProjector orderHistoryProjector;
+
+    @Autowired
+    private OrderHistoryRepository orderHistoryRepository;
+
+    @Autowired
+    private CartRepository cartRepository;
+
+    private Statistics statistics;
+    private User user;
+    private List<Order> orders = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        user = user("history");
+
+        for (int o = 0; o < ORDERS; o++) {
+            Order order = new Order();
+            order.setUser(user);
+            order.setTotalAmount(BigDecimal.valueOf(ITEMS_PER_ORDER));
+            order.setOrderStatus(Order.OrderStatus.PENDING);
+            order.setShippingAddress("1 Test Street");
+            entityManager.persist(order);
+            List<OrderItem> items = new ArrayList<>();
+            for (int i = 0; i < ITEMS_PER_ORDER; i++) {
+                OrderItem item = new OrderItem(null, order, product("Product " + o + "-" + i), 1, BigDecimal.ONE, "test");
+                entityManager.persist(item);
+                items.add(item);
+            }
+            order.setOrderItems(items);
+            orders.add(order);
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        statistics = statistics();
+    }
+
+    @Test
+    void historyLoadsInOneStatement() {
+        orders.forEach(order -> orderHistoryProjector.project(order, order.getOrderItems()));
+        entityManager.flush();
+        entityManager.clear();
+        statistics.clear();
+
+        List<OrderHistoryEntry> history = orderService.getOrderHistory(user.getId());
+
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(ORDERS, history.size());
+        assertEquals(ITEMS_PER_ORDER, history.get(0).getItemCount());
+        assertTrue(history.get(0).getItemsJson().contains("\"name\":\"Product "));
+    }
+
+    @Test
+    void statusChangeReachesHistory() {
+        Order order = orders.get(0);
+        orderHistoryProjector.project(order, order.getOrderItems());
+        entityManager.flush();
+
+        // What OrderService does after saving a status change (its own transaction, so not called here)
+        order.setOrderStatus(Order.OrderStatus.CANCELLED);
+        orderHistoryProjector.projectHeader(order);
+        entityManager.flush();
+        entityManager.clear();
+
+        OrderHistoryEntry entry = orderHistoryRepository.findById(order.getId()).orElseThrow();
+        assertEquals(Order.OrderStatus.CANCELLED, entry.getOrderStatus());
+        assertEquals(ITEMS_PER_ORDER, entry.getItemCount());
+    }
+
+    @Test
+    void backfillProjectsExistingOrders() {
+        orderHistoryProjector.backfill();
+        entityManager.flush();
+        entityManager.clear();
+
+        assertEquals(ORDERS, orderService.getOrderHistory(user.getId()).size());
+    }
+
+    @Test
+    void acceptedOrderIsProjectedWithItsOrderDate() {
+        Cart cart = new Cart();
+        cart.setUser(user);
+        entityManager.persist(cart);
+        entityManager.persist(new CartItem(null, cart, product("Cart product"), 1, BigDecimal.ONE));
+        entityManager.flush();
+        cartRepository.adjustTotals(cart.getId(), BigDecimal.ONE, 1);
+
+        Order order = orderService.acceptOrder(user.getId(), "1 Test Street");
+        entityManager.flush();
+        entityManager.clear();
+
+        OrderHistoryEntry entry = orderHistoryRepository.findById(order.getId()).orElseThrow();
+        assertNotNull(entry.getOrderDate());
+        assertEquals(Order.OrderStatus.PENDING, entry.getOrderStatus());
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.adaptnxt.repository;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.example.adaptnxt.models.Order;
+import com.example.adaptnxt.models.OrderItem;
+import com.example.adaptnxt.models.Product;
+import com.example.adaptnxt.models.User;
+
+// Orders and their items get pooled ids, so an order's INSERTs go out as JDBC batches
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@Transactional
+class OrderInsertBatchingTests extends RepositoryTestSupport {
+
+    private static final Logger log = LoggerFactory.getLogger(OrderInsertBatchingTests.class);
+
+    private static final int ITEMS_PER_ORDER = 30;
+    private static final int ORDERS = 200;
+    private static final int MEASURED_ORDERS = 2000;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private OrderItemRepository orderItemRepository;
+
+    private Statistics statistics;
+    private User user;
+    private Product product;
+
+    @BeforeEach
+    void setUp() {
+        user = user("batching");
+
+        product = product("Batching product");
+        entityManager.flush();
+
+        statistics = statistics();
+    }
+
+    @Test
+    void orderWithItemsIsInsertedInBatches() {
+        saveOrder();
+        entityManager.flush();
+
+        // IDENTITY ids needed one round trip per row: 1 + ITEMS_PER_ORDER
+        long statements = statistics.getPrepareStatementCount();
+        assertTrue(statements < 10, "expected batched inserts, got " + statements + " statements");
+    }
+
+    // Many orders flushed together still go out as a handful of batches, not a statement per row
+    @Test
+    void manyOrdersAreInsertedInBatches() {
+        insertOrders(ORDERS);
+        long rows = (long) ORDERS * (ITEMS_PER_ORDER + 1);
+        long statements = statistics.getPrepareStatementCount();
+        assertTrue(statements < rows / 10, "expected batched inserts, got " + statements + " statements for " + rows + " rows");
+    }
+
+    /**
+     * Opt-in timing of order inserts against the configured datasource, not run
+     * by default: mvn test -Dtest=OrderInsertBatchingTests -Dbenchmarks=true.
+     * To compare with unbatched inserts, run it again with
+     * -Dspring.jpa.properties.hibernate.jdbc.batch_size=1. Times the flushes
+     * only; the transaction is rolled back, so commit cost is not included.
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+    void measureOrderInsertThroughput() {
+        insertOrders(ORDERS);
+        statistics = statistics();
+
+        long started = System.nanoTime();
+        insertOrders(MEASURED_ORDERS);
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+
+        long rows = (long) MEASURED_ORDERS * (ITEMS_PER_ORDER + 1);
+        log.info("Inserted {} orders ({} rows) in {} ms with {} statements: {} orders/s",
+                MEASURED_ORDERS, rows, elapsedMs, statistics.getPrepareStatementCount(),
+                MEASURED_ORDERS * 1000L / Math.max(1, elapsedMs));
+        assertTrue(statistics.getEntityInsertCount() >= rows, "expected " + rows + " inserted rows");
+    }
+
+    private void insertOrders(int orders) {
+        for (int i = 0; i < orders; i++) {
+            saveOrder();
+            if (i % 10 == 9) {
+                entityManager.flush();
+                entityManager.clear();
+            }
+        }
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    private void saveOrder() {
+        Order order = new Order();
+        order.setUser(entityManager.getReference(User.class, user.getId()));
+        order.setTotalAmount(BigDecimal.valueOf(ITEMS_PER_ORDER));
+        order.setOrderStatus(Order.OrderStatus.PENDING);
+        order.setShippingAddress("1 Test Street");
+        orderRepository.save(order);
+
+        List<OrderItem> items = new ArrayList<>(ITEMS_PER_ORDER);
+        for (int i = 0; i < ITEMS_PER_ORDER; i++) {
+            items.add(new OrderItem(null, order, entityManager.getReference(Product.class, product.getId()), 1, BigDecimal.ONE, "test"));
+        }
+        orderItemRepository.saveAll(items);
+    }
+}
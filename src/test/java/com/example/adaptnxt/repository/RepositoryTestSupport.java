@@ -0,0 +1,56 @@
+package com.example.adaptnxt.repository;
+
+import java.math.BigDecimal;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import com.example.adaptnxt.models.Product;
+import com.example.adaptnxt.models.User;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+
+// Rows the repository tests build on, persisted in the test's transaction
+abstract class RepositoryTestSupport {
+
+    @Autowired
+    protected EntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    // A customer named "<name>-test"
+    protected User user(String name) {
+        User user = new User();
+        user.setUsername(name + "-test");
+        user.setEmail(name + "-test@example.com");
+        user.setPassword("secret");
+        user.setRole(User.Role.CUSTOMER);
+        entityManager.persist(user);
+        return user;
+    }
+
+    protected Product product(String name) {
+        return product(name, "test");
+    }
+
+    // Priced at one, with ten in stock
+    protected Product product(String name, String category) {
+        Product product = new Product();
+        product.setName(name);
+        product.setCategory(category);
+        product.setPrice(BigDecimal.ONE);
+        product.setStock(10);
+        entityManager.persist(product);
+        return product;
+    }
+
+    // Hibernate's statement counters, reset; the test must enable hibernate.generate_statistics
+    protected Statistics statistics() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        return statistics;
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.adaptnxt.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.example.adaptnxt.models.Order;
+import com.example.adaptnxt.models.OrderItem;
+import com.example.adaptnxt.models.Product;
+import com.example.adaptnxt.models.SalesRollup;
+import com.example.adaptnxt.models.User;
+import com.example.adaptnxt.service.SalesRollupService;
+
+// Checkouts add to the hourly and daily rollups and cancellations take the same amounts back out
+@SpringBootTest
+@Transactional
+class SalesRollupTests extends RepositoryTestSupport {
+
+    // Every order lands in the same hour and day, away from any real traffic
+    private static final LocalDateTime ORDER_DATE = LocalDateTime.of(2024, 3, 15, 10, 30);
+
+    @Autowired
+    private SalesRollupService salesRollupService;
+
+    private User user;
+    private Product toy;
+    private Product book;
+
+    @BeforeEach
+    void setUp() {
+        user = user("rollup");
+
+        toy = product("Toy", "toys");
+        book = product("Book", "books");
+    }
+
+    @Test
+    void checkoutAndCancellationMoveRollups() {
+        order(line(toy, 2, "10.00"), line(toy, 1, "9.00"));
+        Order second = order(line(toy, 1, "10.00"), line(book, 3, "1.50"));
+
+        assertRollup(SalesRollup.Dimension.TOTAL, SalesRollup.TOTAL_KEY, 7, "43.50", 2);
+        assertRollup(SalesRollup.Dimension.PRODUCT, toy.getId().toString(), 4, "39.00", 2);
+        assertRollup(SalesRollup.Dimension.CATEGORY, "books", 3, "4.50", 1);
+
+        // Recategorised after checkout: the reversal still takes the book's amounts out of "books"
+        entityManager.createNativeQuery("UPDATE products SET category = 'stationery' WHERE id = :id")
+                .setParameter("id", book.getId())
+                .executeUpdate();
+        salesRollupService.reverseOrders(List.of(second.getId()));
+
+        assertRollup(SalesRollup.Dimension.TOTAL, SalesRollup.TOTAL_KEY, 3, "29.00", 1);
+        assertRollup(SalesRollup.Dimension.PRODUCT, toy.getId().toString(), 3, "29.00", 1);
+        assertRollup(SalesRollup.Dimension.CATEGORY, "books", 0, "0.00", 0);
+    }
+
+    private void assertRollup(SalesRollup.Dimension dimension, String key, long units, String revenue, long orders) {
+        // Rollups are written with plain JDBC; drop entities read before the last change
+        entityManager.clear();
+        for (SalesRollup.Granularity granularity : SalesRollup.Granularity.values()) {
+            List<SalesRollup> rows = salesRollupService.getRollups(
+                    granularity, dimension, key, ORDER_DATE.minusDays(1), ORDER_DATE.plusDays(1));
+            assertEquals(1, rows.size());
+            assertEquals(units, rows.get(0).getUnits());
+            assertEquals(new BigDecimal(revenue), rows.get(0).getRevenue());
+            assertEquals(orders, rows.get(0).getOrderCount());
+        }
+    }
+
+    private Order order(OrderItem... lines) {
+        Order order = new Order();
+        order.setUser(user);
+        order.setTotalAmount(BigDecimal.TEN);
+        order.setOrderStatus(Order.OrderStatus.PENDING);
+        order.setShippingAddress("1 Test Street");
+        entityManager.persist(order);
+        List<OrderItem> items = new ArrayList<>();
+        for (OrderItem line : lines) {
+            line.setOrder(order);
+            entityManager.persist(line);
+            items.add(line);
+        }
+        entityManager.flush();
+        // order_date is stamped on insert and not updatable through the entity
+        entityManager.createNativeQuery("UPDATE orders SET order_date = :orderDate WHERE id = :id")
+                .setParameter("orderDate", ORDER_DATE)
+                .setParameter("id", order.getId())
+                .executeUpdate();
+        order.setOrderDate(ORDER_DATE);
+        salesRollupService.recordOrder(order, items);
+        return order;
+    }
+
+    private OrderItem line(Product product, int quantity, String price) {
+        return new OrderItem(null, null, product, quantity, new BigDecimal(price), product.getCategory());
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.adaptnxt.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.KeysetScrollPosition;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+
+// Cursors come back from clients, so anything but the keys of the sort they were issued for is a bad request
+class KeysetCursorTests {
+
+    private static final Sort SORT = Sort.by("name").and(Sort.by("id"));
+
+    private static final Map<String, Function<String, Object>> PARSERS = Map.of(
+            "id", Long::valueOf,
+            "name", value -> value,
+            "stock", Integer::valueOf);
+
+    @Test
+    void issuedCursorRoundTrips() {
+        Map<String, Object> keys = new LinkedHashMap<>();
+        keys.put("name", "Lamp & shade");
+        keys.put("id", 42L);
+        String token = KeysetCursor.encode(SORT, ScrollPosition.forward(keys));
+
+        KeysetScrollPosition position = KeysetCursor.decode(token, SORT, PARSERS);
+
+        assertEquals(keys, position.getKeys());
+    }
+
+    @Test
+    void cursorMissingASortKeyIsRejected() {
+        assertInvalid(token("name:ASC,id:ASC|name=Lamp"));
+    }
+
+    @Test
+    void cursorWithAnExtraKeyIsRejected() {
+        assertInvalid(token("name:ASC,id:ASC|name=Lamp&id=42&stock=3"));
+    }
+
+    @Test
+    void cursorRepeatingAKeyIsRejected() {
+        assertInvalid(token("name:ASC,id:ASC|name=Lamp&name=Desk"));
+    }
+
+    private static void assertInvalid(String token) {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> KeysetCursor.decode(token, SORT, PARSERS));
+        assertEquals("Invalid cursor", e.getMessage());
+    }
+
+    private static String token(String raw) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+}